@@ -0,0 +1,53 @@
+package ru.hogwarts.school.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.hogwarts.school.service.AvatarPreviewGenerator;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Генерация обложки аватара из файла фотографии типичного размера (чтение с диска, декодирование, масштабирование, запись).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AvatarPreviewBenchmark {
+
+    @Param({"jpg", "png"})
+    public String format;
+
+    private final AvatarPreviewGenerator generator = new AvatarPreviewGenerator();
+    private Path file;
+
+    @Setup
+    public void setUp() throws IOException {
+        BufferedImage image = new BufferedImage(1280, 960, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, Color.ORANGE, 1280, 960, Color.BLUE));
+        graphics.fillRect(0, 0, 1280, 960);
+        graphics.setColor(Color.WHITE);
+        graphics.fillOval(440, 280, 400, 400);
+        graphics.dispose();
+        file = Files.createTempFile("avatar-benchmark", "." + format);
+        ImageIO.write(image, format, file.toFile());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public byte[] generatePreview() throws IOException {
+        return generator.generatePreview(file, format);
+    }
+}
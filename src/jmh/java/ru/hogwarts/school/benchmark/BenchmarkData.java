@@ -0,0 +1,58 @@
+package ru.hogwarts.school.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.hogwarts.school.SchoolApplication;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.service.FacultyService;
+import ru.hogwarts.school.service.StudentService;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Приложение без веб-сервера на базе H2 в памяти, заполненное детерминированными данными:
+ * одинаковые параметры дают одинаковую базу в каждом форке.
+ */
+final class BenchmarkData {
+    static final String[] FACULTY_NAMES = {"Gryffindor", "Slytherin", "Hufflepuff", "Ravenclaw"};
+    static final String[] FACULTY_COLORS = {"red", "green", "yellow", "blue"};
+    private static final String[] FIRST_NAMES = {"Анна", "Борис", "Алексей", "Вера", "Гарри", "Александра", "Рон", "Гермиона",
+            "Дмитрий", "Алиса", "Елена", "Невилл", "Полумна", "Андрей", "Ирина", "Драко"};
+    private static final int BATCH = 1000;
+
+    private BenchmarkData() {
+    }
+
+    static ConfigurableApplicationContext start(String database) {
+        return new SpringApplicationBuilder(SchoolApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.liquibase.enabled=false",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--spring.main.banner-mode=off");
+    }
+
+    static void seed(ConfigurableApplicationContext context, int students) {
+        FacultyService facultyService = context.getBean(FacultyService.class);
+        StudentService studentService = context.getBean(StudentService.class);
+        List<Faculty> faculties = new ArrayList<>();
+        for (int i = 0; i < FACULTY_NAMES.length; i++) {
+            faculties.add(facultyService.createFaculty(new Faculty(null, FACULTY_NAMES[i], FACULTY_COLORS[i])));
+        }
+        List<Student> batch = new ArrayList<>(BATCH);
+        for (int i = 0; i < students; i++) {
+            Student student = new Student(null, FIRST_NAMES[i % FIRST_NAMES.length] + " " + i, 11 + i % 7);
+            student.setFaculty(faculties.get(i % faculties.size()));
+            batch.add(student);
+            if (batch.size() == BATCH || i == students - 1) {
+                studentService.createStudents(batch);
+                batch = new ArrayList<>(BATCH);
+            }
+        }
+    }
+}
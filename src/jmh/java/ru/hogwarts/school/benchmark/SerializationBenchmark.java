@@ -0,0 +1,89 @@
+package ru.hogwarts.school.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.model.StudentView;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON против CBOR на списке студентов такого же размера, как ответ /student: время записи и чтения.
+ * Размер ответа в байтах печатается при подготовке каждого форка.
+ * Отдельно - запись в JSON списков сущностей Student и Faculty, которые отдают эндпоинты по id и пакетные.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param("10000")
+    public int rows;
+
+    private ObjectMapper json;
+    private ObjectMapper cbor;
+    private List<StudentView> students;
+    private List<Student> studentEntities;
+    private List<Faculty> facultyEntities;
+    private byte[] jsonPayload;
+    private byte[] cborPayload;
+
+    @Setup
+    public void setUp() throws IOException {
+        json = Jackson2ObjectMapperBuilder.json().build();
+        cbor = Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build();
+        students = new ArrayList<>(rows);
+        for (int i = 1; i <= rows; i++) {
+            long facultyId = i % 4 + 1;
+            students.add(new StudentView((long) i, "Student " + i, 11 + i % 7, facultyId, "Faculty " + facultyId));
+        }
+        studentEntities = new ArrayList<>(rows);
+        facultyEntities = new ArrayList<>(rows);
+        for (StudentView student : students) {
+            studentEntities.add(new Student(student.id(), student.name(), student.age()));
+            facultyEntities.add(new Faculty(student.id(), student.facultyName(), "color " + student.facultyId()));
+        }
+        jsonPayload = json.writeValueAsBytes(students);
+        cborPayload = cbor.writeValueAsBytes(students);
+        System.out.printf("%n%d rows: json %d bytes, cbor %d bytes%n", rows, jsonPayload.length, cborPayload.length);
+    }
+
+    @Benchmark
+    public byte[] writeJson() throws IOException {
+        return json.writeValueAsBytes(students);
+    }
+
+    @Benchmark
+    public byte[] writeCbor() throws IOException {
+        return cbor.writeValueAsBytes(students);
+    }
+
+    @Benchmark
+    public byte[] writeStudentEntitiesJson() throws IOException {
+        return json.writeValueAsBytes(studentEntities);
+    }
+
+    @Benchmark
+    public byte[] writeFacultyEntitiesJson() throws IOException {
+        return json.writeValueAsBytes(facultyEntities);
+    }
+
+    @Benchmark
+    public StudentView[] readJson() throws IOException {
+        return json.readValue(jsonPayload, StudentView[].class);
+    }
+
+    @Benchmark
+    public StudentView[] readCbor() throws IOException {
+        return cbor.readValue(cborPayload, StudentView[].class);
+    }
+}
@@ -0,0 +1,79 @@
+package ru.hogwarts.school.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.hogwarts.school.model.FacultyView;
+import ru.hogwarts.school.model.StudentView;
+import ru.hogwarts.school.service.FacultyService;
+import ru.hogwarts.school.service.StudentService;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Горячие методы сервисов через Spring-прокси (транзакции, кэш, метрики) на заполненной базе H2 в памяти.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServiceBenchmark {
+
+    @Param("10000")
+    public int students;
+
+    private ConfigurableApplicationContext context;
+    private StudentService studentService;
+    private FacultyService facultyService;
+    private CacheManager cacheManager;
+    private int age;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkData.start("service_benchmark");
+        BenchmarkData.seed(context, students);
+        studentService = context.getBean(StudentService.class);
+        facultyService = context.getBean(FacultyService.class);
+        cacheManager = context.getBean(CacheManager.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Collection<StudentView> findByAge() {
+        age = age == 6 ? 0 : age + 1;
+        return studentService.findByAge(11 + age);
+    }
+
+    @Benchmark
+    public Double getStudentsAverageAge() {
+        return studentService.getStudentsAverageAge();
+    }
+
+    @Benchmark
+    public Collection<StudentView> getStudentsWhoseNameStartsWithA() {
+        return studentService.getStudentsWhoseNameStartsWithA();
+    }
+
+    @Benchmark
+    public Collection<String> getMostLongestName() {
+        return facultyService.getMostLongestName();
+    }
+
+    @Benchmark
+    public Collection<FacultyView> findByNameOrColorCached() {
+        return facultyService.findByNameOrColor("GREEN");
+    }
+
+    @Benchmark
+    public Collection<FacultyView> findByNameOrColorUncached() {
+        cacheManager.getCache(FacultyService.FACULTY_SEARCH_CACHE).clear();
+        return facultyService.findByNameOrColor("GREEN");
+    }
+}
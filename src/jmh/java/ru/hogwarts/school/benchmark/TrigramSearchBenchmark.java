@@ -0,0 +1,49 @@
+package ru.hogwarts.school.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.hogwarts.school.service.TrigramIndex;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск по индексу триграмм на миллионе имен из небольшого словаря, то есть с длинными списками вхождений
+ * у частых триграмм: "alexander" задевает почти каждое десятое имя, "zz" - почти ничего.
+ * {@code scratchBuffers = 0} меряет слияние списков, которым поиск считает, когда все массивы счетчиков заняты.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class TrigramSearchBenchmark {
+    private static final String[] FIRST_NAMES = {"Alexander", "Alexandra", "Alexey", "Anna", "Boris", "Vera", "Harry", "Ron",
+            "Hermione", "Dmitry", "Alice", "Elena", "Neville", "Luna", "Andrey", "Irina", "Draco", "Ginny", "Fred", "George"};
+    private static final String[] LAST_NAMES = {"Potter", "Weasley", "Granger", "Longbottom", "Lovegood", "Malfoy", "Ivanov",
+            "Petrov", "Sidorov", "Smirnov", "Kuznetsov", "Popov", "Volkov", "Sokolov", "Lebedev", "Kozlov", "Novikov"};
+
+    @Param("1000000")
+    public int documents;
+
+    @Param({"alexander", "harry potter", "zz"})
+    public String query;
+
+    @Param({"1", "0"})
+    public int scratchBuffers;
+
+    private TrigramIndex index;
+
+    @Setup
+    public void setUp() {
+        index = new TrigramIndex(scratchBuffers);
+        for (int i = 0; i < documents; i++) {
+            index.put(i, FIRST_NAMES[i % FIRST_NAMES.length] + " " + LAST_NAMES[i / FIRST_NAMES.length % LAST_NAMES.length] + " " + i);
+        }
+    }
+
+    @Benchmark
+    public List<TrigramIndex.Match> search() {
+        return index.search(query, 20, 0.3);
+    }
+}
@@ -0,0 +1,163 @@
+package ru.hogwarts.school.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * Нагрузка замкнутым циклом: каждый поток отправляет следующий запрос сразу после ответа на предыдущий,
+ * операция выбирается случайно по весам. Задержки пишутся только после прогрева.
+ */
+final class LoadGenerator {
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final int BATCH_LOOKUP_SIZE = 20;
+
+    /**
+     * Операция смеси: имя в отчете, вес и построитель запроса по базовому адресу.
+     */
+    record Operation(String name, int weight, BiFunction<String, ThreadLocalRandom, HttpRequest.Builder> request) {
+    }
+
+    private final HttpClient client;
+    private final String baseUrl;
+    private final List<Operation> operations;
+    private final int totalWeight;
+
+    LoadGenerator(int port, LoadTestData.Dataset data) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(REQUEST_TIMEOUT)
+                .build();
+        this.baseUrl = "http://localhost:" + port;
+        this.operations = mix(data);
+        this.totalWeight = operations.stream().mapToInt(Operation::weight).sum();
+    }
+
+    /**
+     * Смесь чтений и записей по трем контроллерам. Изменяются только студенты из последних 5%:
+     * PUT без факультета отвязывает студента от него, а условный GET с тегом "0" рассчитан на неизмененные строки.
+     */
+    private static List<Operation> mix(LoadTestData.Dataset data) {
+        long[] students = data.studentIds();
+        int editable = Math.max(1, students.length / 20);
+        long[] stable = students.length > editable ? Arrays.copyOf(students, students.length - editable) : students;
+        long[] edited = Arrays.copyOfRange(students, students.length - editable, students.length);
+        long[] faculties = data.facultyIds();
+        long[] avatars = data.avatarStudentIds();
+        String[] colors = data.colors();
+
+        List<Operation> operations = new ArrayList<>();
+        operations.add(new Operation("student.page", 10, (url, random) -> get(url + "/student?limit=50")));
+        operations.add(new Operation("student.get", 20, (url, random) -> get(url + "/student/" + pick(students, random))));
+        operations.add(new Operation("student.get-conditional", 10, (url, random) ->
+                get(url + "/student/" + pick(stable, random)).header("If-None-Match", "\"0\"")));
+        operations.add(new Operation("student.find-age", 5, (url, random) ->
+                get(url + "/student/find/" + random.nextInt(11, 18) + "?limit=50")));
+        operations.add(new Operation("student.batch", 10, (url, random) -> get(url + "/student/batch?ids="
+                + LongStream.range(0, BATCH_LOOKUP_SIZE).map(i -> pick(students, random))
+                .mapToObj(Long::toString).collect(Collectors.joining(",")))));
+        operations.add(new Operation("student.edit", 5, (url, random) -> {
+            long id = pick(edited, random);
+            String body = "{\"name\":\"Edited " + id + "\",\"age\":" + random.nextInt(11, 18) + "}";
+            return HttpRequest.newBuilder(URI.create(url + "/student/" + id))
+                    .header("Content-Type", "application/json")
+                    .PUT(HttpRequest.BodyPublishers.ofString(body));
+        }));
+        operations.add(new Operation("faculty.list", 10, (url, random) -> get(url + "/faculty")));
+        operations.add(new Operation("faculty.get", 5, (url, random) -> get(url + "/faculty/" + pick(faculties, random))));
+        operations.add(new Operation("faculty.find", 5, (url, random) ->
+                get(url + "/faculty/find?request=" + colors[random.nextInt(colors.length)])));
+        operations.add(new Operation("faculty.students", 2, (url, random) ->
+                get(url + "/faculty/get_students/" + pick(faculties, random))));
+        if (avatars.length > 0) {
+            operations.add(new Operation("avatar.page", 5, (url, random) ->
+                    get(url + "/avatar?pageNumber=" + random.nextInt(1, Math.max(2, avatars.length / 5 + 1)) + "&pageSize=5")));
+            operations.add(new Operation("avatar.preview", 10, (url, random) ->
+                    get(url + "/avatar/" + pick(avatars, random) + "/avatar-from-db")));
+            operations.add(new Operation("avatar.file", 3, (url, random) ->
+                    get(url + "/avatar/" + pick(avatars, random) + "/avatar-from-file")));
+        }
+        return List.copyOf(operations);
+    }
+
+    List<Operation> operations() {
+        return operations;
+    }
+
+    /**
+     * Запускает {@code threads} потоков на {@code warmup + duration} и возвращает измерения за окно {@code duration}.
+     */
+    LoadReport.Recorder run(int threads, Duration warmup, Duration duration) throws InterruptedException {
+        long measureFrom = System.nanoTime() + warmup.toNanos();
+        long stopAt = measureFrom + duration.toNanos();
+        LoadReport.Recorder recorder = new LoadReport.Recorder(operations);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    work(recorder.newWorker(), measureFrom, stopAt);
+                } finally {
+                    done.countDown();
+                }
+            }, "load-" + i);
+            worker.setDaemon(true);
+            worker.start();
+        }
+        done.await();
+        return recorder;
+    }
+
+    private void work(LoadReport.WorkerLog log, long measureFrom, long stopAt) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long now = System.nanoTime();
+        while (now < stopAt) {
+            int index = choose(random);
+            HttpRequest request = operations.get(index).request().apply(baseUrl, random).timeout(REQUEST_TIMEOUT).build();
+            long start = System.nanoTime();
+            boolean ok;
+            try {
+                HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                ok = response.statusCode() / 100 == 2 || response.statusCode() == 304;
+            } catch (IOException e) {
+                ok = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            now = System.nanoTime();
+            if (start >= measureFrom) { // запрос, начатый в окне, учитывается, даже если ответ пришел после него
+                log.record(index, now - start, ok);
+            }
+        }
+    }
+
+    private int choose(ThreadLocalRandom random) {
+        int point = random.nextInt(totalWeight);
+        for (int i = 0; i < operations.size(); i++) {
+            point -= operations.get(i).weight();
+            if (point < 0) {
+                return i;
+            }
+        }
+        return operations.size() - 1;
+    }
+
+    private static HttpRequest.Builder get(String url) {
+        return HttpRequest.newBuilder(URI.create(url)).GET();
+    }
+
+    private static long pick(long[] ids, ThreadLocalRandom random) {
+        return ids[random.nextInt(ids.length)];
+    }
+}
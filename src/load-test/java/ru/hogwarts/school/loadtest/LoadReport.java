@@ -0,0 +1,137 @@
+package ru.hogwarts.school.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Итог прогона по каждой операции и по всей смеси. Перцентили точные: считаются по отсортированным задержкам
+ * всех запросов окна, а не по гистограмме.
+ */
+record LoadReport(int threads, double durationSeconds, List<Line> operations, Line total) {
+
+    record Line(String operation, long requests, long errors, double errorRate, double rps,
+                double p50Ms, double p99Ms, double p999Ms, double maxMs) {
+    }
+
+    /**
+     * Журнал одного потока нагрузки; пишется без синхронизации и читается после завершения всех потоков.
+     */
+    static final class WorkerLog {
+        private final long[][] latencies;
+        private final int[] sizes;
+        private final long[] errors;
+
+        private WorkerLog(int operations) {
+            latencies = new long[operations][1024];
+            sizes = new int[operations];
+            errors = new long[operations];
+        }
+
+        void record(int operation, long nanos, boolean ok) {
+            if (sizes[operation] == latencies[operation].length) {
+                latencies[operation] = Arrays.copyOf(latencies[operation], sizes[operation] * 2);
+            }
+            latencies[operation][sizes[operation]++] = nanos;
+            if (!ok) {
+                errors[operation]++;
+            }
+        }
+    }
+
+    static final class Recorder {
+        private final List<LoadGenerator.Operation> operations;
+        private final List<WorkerLog> workers = new CopyOnWriteArrayList<>();
+
+        Recorder(List<LoadGenerator.Operation> operations) {
+            this.operations = operations;
+        }
+
+        WorkerLog newWorker() {
+            WorkerLog log = new WorkerLog(operations.size());
+            workers.add(log);
+            return log;
+        }
+
+        LoadReport report(int threads, Duration duration) {
+            double seconds = duration.toNanos() / 1e9;
+            List<Line> lines = new ArrayList<>(operations.size());
+            List<long[]> all = new ArrayList<>();
+            long totalErrors = 0;
+            for (int i = 0; i < operations.size(); i++) {
+                long[] latencies = collect(i);
+                long errors = 0;
+                for (WorkerLog worker : workers) {
+                    errors += worker.errors[i];
+                }
+                totalErrors += errors;
+                all.add(latencies);
+                lines.add(line(operations.get(i).name(), latencies, errors, seconds));
+            }
+            long[] merged = all.stream().flatMapToLong(Arrays::stream).toArray();
+            return new LoadReport(threads, seconds, lines, line("total", merged, totalErrors, seconds));
+        }
+
+        private long[] collect(int operation) {
+            int size = 0;
+            for (WorkerLog worker : workers) {
+                size += worker.sizes[operation];
+            }
+            long[] latencies = new long[size];
+            int offset = 0;
+            for (WorkerLog worker : workers) {
+                System.arraycopy(worker.latencies[operation], 0, latencies, offset, worker.sizes[operation]);
+                offset += worker.sizes[operation];
+            }
+            return latencies;
+        }
+
+        private static Line line(String name, long[] latencies, long errors, double seconds) {
+            Arrays.sort(latencies);
+            int requests = latencies.length;
+            return new Line(name, requests, errors, requests == 0 ? 0 : (double) errors / requests, requests / seconds,
+                    percentile(latencies, 0.5), percentile(latencies, 0.99), percentile(latencies, 0.999),
+                    requests == 0 ? 0 : latencies[requests - 1] / 1e6);
+        }
+
+        private static double percentile(long[] sorted, double quantile) { // nearest-rank
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(quantile * sorted.length);
+            return sorted[Math.max(0, rank - 1)] / 1e6;
+        }
+    }
+
+    void print(PrintStream out) {
+        out.printf("%n%-26s %9s %8s %9s %9s %9s %9s %9s %9s%n",
+                "operation", "requests", "errors", "error %", "rps", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        for (Line line : operations) {
+            print(out, line);
+        }
+        print(out, total);
+        out.printf("%d threads, %.0f s measured%n", threads, durationSeconds);
+    }
+
+    private static void print(PrintStream out, Line line) {
+        out.printf("%-26s %9d %8d %9.3f %9.1f %9.2f %9.2f %9.2f %9.2f%n", line.operation(), line.requests(), line.errors(),
+                line.errorRate() * 100, line.rps(), line.p50Ms(), line.p99Ms(), line.p999Ms(), line.maxMs());
+    }
+
+    void write(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), this);
+    }
+}
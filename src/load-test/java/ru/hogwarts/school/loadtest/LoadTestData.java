@@ -0,0 +1,100 @@
+package ru.hogwarts.school.loadtest;
+
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.model.AvatarStatus;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.AvatarRepository;
+import ru.hogwarts.school.service.AvatarPreviewGenerator;
+import ru.hogwarts.school.service.FacultyService;
+import ru.hogwarts.school.service.StudentService;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Заполняет базу через сервисы приложения (чтобы индексы и статистика были согласованы с данными)
+ * и возвращает id, по которым нагрузка строит запросы.
+ */
+final class LoadTestData {
+    private static final String[] COLORS = {"red", "green", "yellow", "blue", "silver", "violet", "orange", "black"};
+    private static final String[] FIRST_NAMES = {"Анна", "Борис", "Алексей", "Вера", "Гарри", "Александра", "Рон", "Гермиона",
+            "Дмитрий", "Алиса", "Елена", "Невилл", "Полумна", "Андрей", "Ирина", "Драко"};
+    private static final int BATCH = 1000;
+
+    record Dataset(long[] studentIds, long[] facultyIds, long[] avatarStudentIds, String[] colors) {
+    }
+
+    private LoadTestData() {
+    }
+
+    static Dataset seed(ConfigurableApplicationContext context, LoadTestSettings settings) throws IOException {
+        FacultyService facultyService = context.getBean(FacultyService.class);
+        StudentService studentService = context.getBean(StudentService.class);
+
+        List<Faculty> faculties = new ArrayList<>(settings.faculties());
+        String[] colors = new String[settings.faculties()];
+        for (int i = 0; i < settings.faculties(); i++) {
+            colors[i] = COLORS[i % COLORS.length];
+            faculties.add(facultyService.createFaculty(new Faculty(null, "Faculty " + (i + 1), colors[i])));
+        }
+
+        List<Student> students = new ArrayList<>(settings.students());
+        List<Student> batch = new ArrayList<>(BATCH);
+        for (int i = 0; i < settings.students(); i++) {
+            Student student = new Student(null, FIRST_NAMES[i % FIRST_NAMES.length] + " " + i, 11 + i % 7);
+            student.setFaculty(faculties.get(i % faculties.size()));
+            batch.add(student);
+            if (batch.size() == BATCH || i == settings.students() - 1) {
+                students.addAll(studentService.createStudents(batch));
+                batch = new ArrayList<>(BATCH);
+            }
+        }
+
+        long[] avatarStudentIds = seedAvatars(context, students.subList(0, Math.min(settings.avatars(), students.size())));
+        return new Dataset(students.stream().mapToLong(Student::getId).toArray(),
+                faculties.stream().mapToLong(Faculty::getId).toArray(),
+                avatarStudentIds, colors);
+    }
+
+    /**
+     * Один и тот же снимок копируется под именем каждого студента, как это делает загрузка аватара;
+     * обложка считается один раз.
+     */
+    private static long[] seedAvatars(ConfigurableApplicationContext context, List<Student> students) throws IOException {
+        Path folder = Path.of(context.getEnvironment().getRequiredProperty("path.to.avatars.folder"));
+        Files.createDirectories(folder);
+        Path original = folder.resolve("original.jpg");
+        BufferedImage image = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, Color.ORANGE, 640, 480, Color.BLUE));
+        graphics.fillRect(0, 0, 640, 480);
+        graphics.dispose();
+        ImageIO.write(image, "jpg", original.toFile());
+        byte[] preview = context.getBean(AvatarPreviewGenerator.class).generatePreview(original, "jpg");
+
+        AvatarRepository avatarRepository = context.getBean(AvatarRepository.class);
+        List<Avatar> avatars = new ArrayList<>(students.size());
+        for (Student student : students) {
+            Path file = Files.copy(original, folder.resolve(student.getId() + ".jpg"), StandardCopyOption.REPLACE_EXISTING);
+            Avatar avatar = new Avatar();
+            avatar.setStudent(student);
+            avatar.setFilePath(file.toString());
+            avatar.setFileSize(Files.size(file));
+            avatar.setMediaType("image/jpeg");
+            avatar.setData(preview);
+            avatar.setStatus(AvatarStatus.READY);
+            avatars.add(avatar);
+        }
+        avatarRepository.saveAll(avatars);
+        return students.stream().mapToLong(Student::getId).toArray();
+    }
+}
@@ -0,0 +1,46 @@
+package ru.hogwarts.school.loadtest;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.hogwarts.school.SchoolApplication;
+
+/**
+ * Сквозной нагрузочный тест: поднимает приложение с профилем load-test (H2 в памяти, случайный порт),
+ * заполняет базу, гоняет смесь запросов по HTTP и пишет отчет с RPS, p50/p99/p999 и долей ошибок.
+ * Запуск: mvn -Pload-test compile exec:exec [-Dload-test.args="--school.load-test.threads=32"].
+ * Код выхода 1, если доля ошибок выше school.load-test.max-error-rate.
+ */
+public class LoadTestRunner {
+
+    public static void main(String[] args) throws Exception {
+        SpringApplication application = new SpringApplication(SchoolApplication.class);
+        application.setAdditionalProfiles("load-test");
+
+        LoadReport report;
+        LoadTestSettings settings;
+        try (ConfigurableApplicationContext context = application.run(args)) {
+            settings = Binder.get(context.getEnvironment()).bind("school.load-test", LoadTestSettings.class).get();
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+
+            long seedStart = System.nanoTime();
+            LoadTestData.Dataset data = LoadTestData.seed(context, settings);
+            System.out.printf("Seeded %d students, %d faculties, %d avatars in %d ms%n", data.studentIds().length,
+                    data.facultyIds().length, data.avatarStudentIds().length, (System.nanoTime() - seedStart) / 1_000_000);
+
+            LoadGenerator generator = new LoadGenerator(port, data);
+            System.out.printf("Load: %d threads, warmup %s, measured %s%n", settings.threads(), settings.warmup(), settings.duration());
+            report = generator.run(settings.threads(), settings.warmup(), settings.duration())
+                    .report(settings.threads(), settings.duration());
+        }
+
+        report.print(System.out);
+        report.write(settings.report());
+        System.out.println("Report written to " + settings.report().toAbsolutePath());
+        if (report.total().errorRate() > settings.maxErrorRate()) {
+            System.err.printf("Error rate %.4f exceeds %.4f%n", report.total().errorRate(), settings.maxErrorRate());
+            System.exit(1);
+        }
+    }
+}
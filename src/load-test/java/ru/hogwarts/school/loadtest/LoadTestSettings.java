@@ -0,0 +1,11 @@
+package ru.hogwarts.school.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Параметры прогона из school.load-test.* (application-load-test.properties, переопределяются аргументами --school.load-test.*=...).
+ */
+public record LoadTestSettings(int students, int faculties, int avatars, int threads,
+                               Duration warmup, Duration duration, Path report, double maxErrorRate) {
+}
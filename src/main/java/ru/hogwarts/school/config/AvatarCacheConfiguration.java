@@ -0,0 +1,37 @@
+package ru.hogwarts.school.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.cache.CacheManagerCustomizer;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+import ru.hogwarts.school.model.AvatarPreview;
+import ru.hogwarts.school.service.AvatarService;
+
+@Configuration
+public class AvatarCacheConfiguration {
+    private static final int ENTRY_OVERHEAD = 128; // ключ, запись Caffeine, record и заголовок массива
+
+    /**
+     * Кэш обложек ограничен суммарным объемом байт, а не числом записей, как общая spec из spring.cache.caffeine:
+     * размер обложки зависит от формата и картинки. Запись живет не дольше, чем обложку разрешено кэшировать клиентам:
+     * так пропущенный сброс (например, на другом экземпляре приложения) не оставит старую обложку надолго.
+     */
+    @Bean
+    public CacheManagerCustomizer<CaffeineCacheManager> avatarPreviewCacheCustomizer(
+            @Value("${school.avatar.preview-cache.max-size:64MB}") DataSize maxSize) {
+        return cacheManager -> cacheManager.registerCustomCache(AvatarService.AVATAR_PREVIEW_CACHE, Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((Object studentId, Object value) -> weightOf((AvatarPreview) value))
+                .expireAfterWrite(AvatarService.PREVIEW_MAX_AGE)
+                .recordStats()
+                .build());
+    }
+
+    static int weightOf(AvatarPreview preview) {
+        int mediaType = preview.mediaType() == null ? 0 : preview.mediaType().length();
+        return preview.data().length + mediaType + preview.eTag().length() + ENTRY_OVERHEAD;
+    }
+}
@@ -0,0 +1,21 @@
+package ru.hogwarts.school.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+@Configuration
+public class CborConfiguration {
+
+    /**
+     * Ответы в application/cbor по заголовку Accept (и такие же тела запросов) для всех контроллеров.
+     * Заменяет конвертер по умолчанию из Spring MVC, чтобы CBOR собирался тем же builder'ом, что и JSON,
+     * со всеми настройками spring.jackson.*.
+     */
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+}
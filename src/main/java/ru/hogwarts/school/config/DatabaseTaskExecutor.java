@@ -0,0 +1,75 @@
+package ru.hogwarts.school.config;
+
+import org.springframework.core.task.TaskExecutor;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Общий исполнитель фоновых задач, работающих с базой. Задачи выполняются на applicationTaskExecutor
+ * (на Java 21 с профилем virtual-threads - в виртуальных потоках), но к базе одновременно допускается
+ * не больше задач, чем разрешений семафора: их число привязано к размеру пула соединений,
+ * поэтому тысячи задач ждут на семафоре, а не на таймауте Hikari.
+ */
+public class DatabaseTaskExecutor {
+    private final TaskExecutor taskExecutor;
+    private final Semaphore permits;
+
+    public DatabaseTaskExecutor(TaskExecutor taskExecutor, int permits) {
+        if (permits < 1) {
+            throw new IllegalArgumentException("Database permits must be positive: " + permits);
+        }
+        this.taskExecutor = taskExecutor;
+        this.permits = new Semaphore(permits, true);
+    }
+
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        taskExecutor.execute(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result.completeExceptionally(e);
+                return;
+            }
+            try {
+                result.complete(task.call());
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            } finally {
+                permits.release();
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Выполняет задачу в текущем потоке, заняв разрешение на время ее работы. Для кода, у которого свои потоки
+     * (например, ForkJoinPool отчетов), но общий с остальными фоновыми задачами пул соединений.
+     */
+    public <T> T callWithPermit(Supplier<T> task) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a database permit", e);
+        }
+        try {
+            return task.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    public CompletableFuture<Void> execute(Runnable task) {
+        return submit(Executors.callable(task, null));
+    }
+
+    public int availablePermits() {
+        return permits.availablePermits();
+    }
+}
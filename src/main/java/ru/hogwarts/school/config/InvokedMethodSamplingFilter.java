@@ -0,0 +1,40 @@
+package ru.hogwarts.school.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Пропускает только каждую {@code rate}-ю строку "Was invoked method ..." уровня INFO, отдельно для каждого места вызова
+ * (строка формата у каждого вызова своя). Остальные события не трогает. Turbo-фильтр срабатывает до создания события,
+ * поэтому отброшенная строка не стоит ни форматирования, ни записи в очередь аппендера.
+ */
+public class InvokedMethodSamplingFilter extends TurboFilter {
+    public static final String INVOKED_PREFIX = "Was invoked method";
+
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private int rate = 100;
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (level != Level.INFO || format == null || !format.startsWith(INVOKED_PREFIX) || !isStarted()) {
+            return FilterReply.NEUTRAL;
+        }
+        long call = counters.computeIfAbsent(format, f -> new AtomicLong()).getAndIncrement();
+        return call % rate == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    public int getRate() {
+        return rate;
+    }
+
+    public void setRate(int rate) {
+        this.rate = Math.max(rate, 1);
+    }
+}
@@ -0,0 +1,132 @@
+package ru.hogwarts.school.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+import ru.hogwarts.school.model.KeysetPage;
+import ru.hogwarts.school.model.StudentBatch;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время выполнения публичных методов сервисов ({@value #SERVICE_TIMER}) и число строк,
+ * которые вернули сервисы и запросы репозиториев ({@value #ROWS_SUMMARY}).
+ * Время самих запросов репозиториев пишет автоконфигурация Spring Data в spring.data.repository.invocations.
+ */
+@Aspect
+@Component
+public class MethodMetricsAspect {
+    public static final String SERVICE_TIMER = "school.service.invocations";
+    public static final String ROWS_SUMMARY = "school.rows.returned";
+    private static final String NO_EXCEPTION = "none";
+
+    private record MeterKey(String owner, String method) {
+    }
+
+    private final MeterRegistry registry;
+    private final Map<MeterKey, Timer> timers = new ConcurrentHashMap<>(); // только успешные вызовы, с исключением - редкость
+    private final Map<MeterKey, DistributionSummary> rows = new ConcurrentHashMap<>();
+
+    public MethodMetricsAspect(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Around("execution(public * ru.hogwarts.school.service.StudentService.*(..))"
+            + " || execution(public * ru.hogwarts.school.service.FacultyService.*(..))"
+            + " || execution(public * ru.hogwarts.school.service.AvatarService.*(..))")
+    public Object timeServiceMethod(ProceedingJoinPoint joinPoint) throws Throwable {
+        MeterKey key = new MeterKey(joinPoint.getSignature().getDeclaringType().getSimpleName(), joinPoint.getSignature().getName());
+        long start = System.nanoTime();
+        String exception = NO_EXCEPTION;
+        try {
+            Object result = joinPoint.proceed();
+            recordRows("service", key, result);
+            return result;
+        } catch (Throwable e) {
+            exception = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            timer(key, exception).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @AfterReturning(pointcut = "execution(* ru.hogwarts.school.repository.*.*(..))", returning = "result")
+    public void countRepositoryRows(JoinPoint joinPoint, Object result) {
+        recordRows("repository", new MeterKey(repositoryName(joinPoint), joinPoint.getSignature().getName()), result);
+    }
+
+    private Timer timer(MeterKey key, String exception) {
+        if (NO_EXCEPTION.equals(exception)) {
+            return timers.computeIfAbsent(key, k -> buildTimer(k, NO_EXCEPTION));
+        }
+        return buildTimer(key, exception);
+    }
+
+    private Timer buildTimer(MeterKey key, String exception) {
+        return Timer.builder(SERVICE_TIMER)
+                .description("Service method latency")
+                .tag("class", key.owner())
+                .tag("method", key.method())
+                .tag("exception", exception)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private void recordRows(String layer, MeterKey key, Object result) {
+        long count = rowsOf(result);
+        if (count < 0) {
+            return;
+        }
+        rows.computeIfAbsent(key, k -> DistributionSummary.builder(ROWS_SUMMARY)
+                        .description("Rows returned by a service method or repository query")
+                        .baseUnit("rows")
+                        .tag("layer", layer)
+                        .tag("class", k.owner())
+                        .tag("method", k.method())
+                        .register(registry))
+                .record(count);
+    }
+
+    /**
+     * Число строк в результате или -1, если результат не коллекция (сущность, число, поток и т.п.).
+     */
+    static long rowsOf(Object result) {
+        if (result instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (result instanceof KeysetPage<?> page) {
+            return page.content().size();
+        }
+        if (result instanceof Slice<?> slice) {
+            return slice.getNumberOfElements();
+        }
+        if (result instanceof StudentBatch batch) {
+            return batch.students().size();
+        }
+        if (result instanceof Optional<?> optional) {
+            return optional.isPresent() ? 1 : 0;
+        }
+        return -1;
+    }
+
+    private static String repositoryName(JoinPoint joinPoint) { // унаследованные findById/findAll объявлены в CrudRepository
+        for (Class<?> type : joinPoint.getThis().getClass().getInterfaces()) {
+            if (Repository.class.isAssignableFrom(type) && type != Repository.class) {
+                return type.getSimpleName();
+            }
+        }
+        return joinPoint.getSignature().getDeclaringType().getSimpleName();
+    }
+}
@@ -0,0 +1,22 @@
+package ru.hogwarts.school.config;
+
+import org.springframework.transaction.annotation.Transactional;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Чтение, которое нельзя отдавать реплике, хотя оно ничего не пишет: его результат кэшируется или становится
+ * снимком, который дальше поддерживают события после коммита. Отстающая реплика отдала бы данные без последних
+ * коммитов, и расхождение жило бы до сброса кэша или следующей сверки.
+ * Транзакция не read-only, поэтому {@link ReadWriteRoutingDataSource} берет соединение с primary.
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Transactional
+public @interface PrimaryRead {
+}
@@ -0,0 +1,96 @@
+package ru.hogwarts.school.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Направляет read-only транзакции на реплику, остальное - на primary.
+ * Решение принимается при получении физического соединения, поэтому источник нужно оборачивать
+ * в LazyConnectionDataSourceProxy: к этому моменту флаг readOnly транзакции уже выставлен.
+ * Если реплика не отдает соединение, чтение на {@code retryInterval} уходит на primary.
+ * Чтения, которым нужны последние коммиты (кэши, снимки для индексов), помечаются {@link PrimaryRead}.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+    private static final Logger logger = LoggerFactory.getLogger(ReadWriteRoutingDataSource.class);
+
+    private static final ThreadLocal<Boolean> primaryPinned = new ThreadLocal<>();
+
+    enum Route {PRIMARY, REPLICA}
+
+    private final DataSource primary;
+    private final DataSource replica;
+    private final Duration retryInterval;
+    private volatile boolean replicaDown;
+    private volatile long replicaRetryAt;
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, Duration retryInterval) {
+        this.primary = primary;
+        this.replica = replica;
+        this.retryInterval = retryInterval;
+        setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    /**
+     * Все запросы текущего потока, включая read-only, идут на primary (read-your-writes), до {@link #unpinPrimary()}.
+     */
+    public static void pinPrimary() {
+        primaryPinned.set(Boolean.TRUE);
+    }
+
+    public static void unpinPrimary() {
+        primaryPinned.remove();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        boolean readOnly = TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        return readOnly && primaryPinned.get() == null && isReplicaAvailable() ? Route.REPLICA : Route.PRIMARY;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return connect(DataSource::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return connect(dataSource -> dataSource.getConnection(username, password));
+    }
+
+    private Connection connect(ConnectionSource source) throws SQLException {
+        DataSource target = determineTargetDataSource();
+        if (target != replica) {
+            return source.get(target);
+        }
+        try {
+            return source.get(replica);
+        } catch (SQLException e) {
+            replicaRetryAt = System.nanoTime() + retryInterval.toNanos();
+            replicaDown = true;
+            logger.warn("Replica is unavailable, reads go to primary for {}", retryInterval, e);
+            return source.get(primary);
+        }
+    }
+
+    private boolean isReplicaAvailable() {
+        if (replicaDown && System.nanoTime() - replicaRetryAt >= 0) {
+            replicaDown = false;
+        }
+        return !replicaDown;
+    }
+
+    @FunctionalInterface
+    private interface ConnectionSource {
+        Connection get(DataSource dataSource) throws SQLException;
+    }
+}
@@ -0,0 +1,23 @@
+package ru.hogwarts.school.config;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskExecutor;
+
+@Configuration
+public class TaskExecutionConfiguration {
+
+    /**
+     * Сам DatabaseTaskExecutor не реализует Executor: иначе автоконфигурация не создала бы applicationTaskExecutor,
+     * на котором работают и асинхронные ответы MVC.
+     */
+    @Bean
+    public DatabaseTaskExecutor databaseTaskExecutor(
+            @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) TaskExecutor taskExecutor,
+            @Value("${school.executor.database-permits:${spring.datasource.hikari.maximum-pool-size:10}}") int permits) {
+        return new DatabaseTaskExecutor(taskExecutor, permits);
+    }
+}
@@ -1,20 +1,24 @@
 package ru.hogwarts.school.controller;
 
 import io.swagger.v3.oas.annotations.Operation;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.model.AvatarPreview;
+import ru.hogwarts.school.model.AvatarStatusView;
+import ru.hogwarts.school.model.VersionTag;
 import ru.hogwarts.school.service.AvatarService;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.nio.file.Files;
+import java.net.URI;
 import java.nio.file.Path;
 import java.util.List;
 
@@ -29,41 +33,53 @@ public class AvatarController {
     }
 
     @PostMapping(value = "/{studentId}/avatar", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    @Operation(summary = "Загрузить аватар, привязав его к ID студента")
+    @Operation(summary = "Загрузить аватар, привязав его к ID студента (202: обложка строится в фоне, 503: очередь заполнена)")
     public ResponseEntity uploadAvatar(@PathVariable Long studentId, @RequestParam MultipartFile avatar) throws IOException {
         if (avatar.getSize() >= 640 * 640) {
             return ResponseEntity.badRequest().body("File is too big");
         }
-        avatarService.uploadAvatar(studentId, avatar);
-        return ResponseEntity.ok().build();
+        AvatarStatusView status = avatarService.uploadAvatar(studentId, avatar);
+        return ResponseEntity.accepted().location(URI.create("/avatar/" + studentId + "/status")).body(status);
+    }
+
+    @GetMapping(value = "/{id}/status")
+    @Operation(summary = "Получить состояние обработки аватара по ID студента")
+    public ResponseEntity<AvatarStatusView> getAvatarStatus(@PathVariable Long id) {
+        AvatarStatusView status = avatarService.findAvatarStatus(id);
+        if (status == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(status);
     }
 
     @GetMapping(value = "/{id}/avatar-from-db")
-    @Operation(summary = "Получить аватар студента из базы данных по ID студента")
-    public ResponseEntity<byte[]> downloadAvatar(@PathVariable Long id) throws IOException {
-        Avatar avatar = avatarService.findAvatar(id);
+    @Operation(summary = "Получить аватар студента из базы данных по ID студента (304, если не изменился с ETag из If-None-Match)")
+    public ResponseEntity<byte[]> downloadAvatar(@PathVariable Long id,
+                                                 @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        AvatarPreview preview = avatarService.findAvatarPreview(id);
+        if (preview == null) {
+            return ResponseEntity.notFound().build();
+        }
+        CacheControl cacheControl = CacheControl.maxAge(AvatarService.PREVIEW_MAX_AGE).cachePublic();
+        if (ifNoneMatch != null && VersionTag.matches(ifNoneMatch, preview.eTag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(preview.eTag()).cacheControl(cacheControl).build();
+        }
 
         HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.parseMediaType(avatar.getMediaType()));
-        headers.setContentLength(avatar.getData().length);
+        headers.setContentType(MediaType.parseMediaType(preview.mediaType()));
+        headers.setContentLength(preview.data().length);
 
-        return ResponseEntity.status(HttpStatus.OK).headers(headers).body(avatar.getData());
+        return ResponseEntity.status(HttpStatus.OK).headers(headers).eTag(preview.eTag()).cacheControl(cacheControl).body(preview.data());
     }
 
     @GetMapping(value = "/{id}/avatar-from-file")
-    @Operation(summary = "Получить оригинал аватара студента по ID студента")
-    public void downloadAvatar(@PathVariable Long id, HttpServletResponse response) throws IOException {
+    @Operation(summary = "Получить оригинал аватара студента по ID студента (поддерживает Range для докачки)")
+    public void downloadAvatar(@PathVariable Long id, HttpServletRequest request, HttpServletResponse response) throws IOException {
         Avatar avatar = avatarService.findAvatar(id);
-
-        Path path = Path.of(avatar.getFilePath());
-
-        try (InputStream inputStream = Files.newInputStream(path);
-             OutputStream outputStream = response.getOutputStream()) {
-            response.setStatus(200);
-            response.setContentType(avatar.getMediaType());
-            response.setContentLength((int) avatar.getFileSize());
-            inputStream.transferTo(outputStream);
+        if (avatar == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Avatar not found for student " + id);
         }
+        FileRangeResponder.send(request, response, Path.of(avatar.getFilePath()), avatar.getMediaType());
     }
 
     @GetMapping
@@ -1,10 +1,16 @@
 package ru.hogwarts.school.controller;
 
 import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.hogwarts.school.model.Faculty;
-import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.model.FacultyRoster;
+import ru.hogwarts.school.model.FacultyView;
+import ru.hogwarts.school.model.KeysetPage;
+import ru.hogwarts.school.model.StudentView;
+import ru.hogwarts.school.model.VersionTag;
 import ru.hogwarts.school.service.FacultyService;
 
 import java.util.Collection;
@@ -25,24 +31,32 @@ public class FacultyController {
     }
 
     @GetMapping("{id}")
-    @Operation(summary = "Получить информацию о факультете по его ID")
-    public ResponseEntity<Faculty> getFacultyInfo(@PathVariable Long id) {
+    @Operation(summary = "Получить информацию о факультете по его ID (304, если не изменился с версии из If-None-Match)")
+    public ResponseEntity<Faculty> getFacultyInfo(@PathVariable Long id,
+                                                  @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (ifNoneMatch != null) {
+            Long version = facultyService.findFacultyVersion(id);
+            if (version != null && VersionTag.matches(ifNoneMatch, version)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(VersionTag.of(version)).build();
+            }
+        }
         Faculty faculty = facultyService.findFaculty(id);
         if (faculty == null) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(faculty);
+        return ResponseEntity.ok().eTag(VersionTag.of(faculty.getVersion())).body(faculty);
     }
 
     @PutMapping("/{id}")
-    @Operation(summary = "Изменить информацию о факультете по его ID")
-    public ResponseEntity<Faculty> editFacultyInfo(@PathVariable Long id, @RequestBody Faculty faculty) {
+    @Operation(summary = "Изменить информацию о факультете по его ID (412, если версия не совпала с If-Match)")
+    public ResponseEntity<Faculty> editFacultyInfo(@PathVariable Long id, @RequestBody Faculty faculty,
+                                                   @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         faculty.setId(id);
-        Faculty foundFaculty = facultyService.editFaculty(faculty);
+        Faculty foundFaculty = facultyService.editFaculty(faculty, VersionTag.parseIfMatch(ifMatch));
         if (foundFaculty == null) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(foundFaculty);
+        return ResponseEntity.ok().eTag(VersionTag.of(foundFaculty.getVersion())).body(foundFaculty);
     }
 
     @DeleteMapping("{id}")
@@ -53,20 +67,30 @@ public class FacultyController {
     }
 
     @GetMapping
-    @Operation(summary = "Получить все факультеты")
-    public ResponseEntity<Collection<Faculty>> getAllFaculties() {
-        return ResponseEntity.ok(facultyService.getAllFaculties());
+    @Operation(summary = "Получить все факультеты (постранично, если задан limit)")
+    public ResponseEntity<Collection<FacultyView>> getAllFaculties(@RequestParam(required = false) Integer limit,
+                                                                   @RequestParam(required = false) String next) {
+        if (limit == null && next == null) {
+            return ResponseEntity.ok(facultyService.getAllFaculties());
+        }
+        return facultyService.getFacultiesPage(next, limit == null ? KeysetPage.DEFAULT_LIMIT : limit).toResponse();
     }
 
     @GetMapping("/find")
     @Operation(summary = "Найти факультет по названию или цвету")
-    public ResponseEntity<Collection<Faculty>> findByNameOrColor(@RequestParam String request) {
+    public ResponseEntity<Collection<FacultyView>> findByNameOrColor(@RequestParam String request) {
         return ResponseEntity.ok(facultyService.findByNameOrColor(request));
     }
 
+    @GetMapping("/{id}/roster")
+    @Operation(summary = "Получить факультет вместе со списком его студентов (одним запросом)")
+    public FacultyRoster getFacultyRoster(@PathVariable Long id) {
+        return facultyService.getFacultyRoster(id);
+    }
+
     @GetMapping("/get_students/{id}")
     @Operation(summary = "Получить всех студентов факультета, по его ID")
-    public ResponseEntity<Collection<Student>> getStudentsByFacultyId(@PathVariable Long id) {
+    public ResponseEntity<Collection<StudentView>> getStudentsByFacultyId(@PathVariable Long id) {
         return ResponseEntity.ok(facultyService.getStudentsByFacultyId(id));
     }
 
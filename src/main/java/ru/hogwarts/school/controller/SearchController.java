@@ -0,0 +1,28 @@
+package ru.hogwarts.school.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import ru.hogwarts.school.model.SearchHit;
+import ru.hogwarts.school.service.SearchService;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("search")
+public class SearchController {
+    private final SearchService searchService;
+
+    public SearchController(SearchService searchService) {
+        this.searchService = searchService;
+    }
+
+    @GetMapping
+    @Operation(summary = "Нечеткий поиск по именам студентов, названиям и цветам факультетов")
+    public ResponseEntity<List<SearchHit>> search(@RequestParam String q, @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(searchService.search(q, limit));
+    }
+}
@@ -1,13 +1,24 @@
 package ru.hogwarts.school.controller;
 
 import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.KeysetPage;
 import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.model.StudentBatch;
+import ru.hogwarts.school.model.StudentAggregates;
+import ru.hogwarts.school.model.StudentReport;
+import ru.hogwarts.school.model.StudentView;
+import ru.hogwarts.school.model.VersionTag;
 import ru.hogwarts.school.service.StudentService;
 
 import java.util.Collection;
+import java.util.List;
 
 @RestController
 @RequestMapping("student")
@@ -24,25 +35,57 @@ public class StudentController {
         return studentService.createStudent(student);
     }
 
+    @PostMapping("/batch")
+    @Operation(summary = "Создать несколько студентов одним запросом")
+    public Collection<Student> createStudents(@RequestBody List<Student> students) {
+        return studentService.createStudents(students);
+    }
+
+    @PutMapping("/batch")
+    @Operation(summary = "Изменить информацию о нескольких студентах одним запросом")
+    public Collection<Student> editStudents(@RequestBody List<Student> students) {
+        return studentService.editStudents(students);
+    }
+
+    @GetMapping("/batch")
+    @Operation(summary = "Получить студентов по списку ID (в порядке запроса, ненайденные ID - отдельным списком)")
+    public StudentBatch findStudents(@RequestParam List<Long> ids) {
+        return studentService.findStudents(ids);
+    }
+
+    @PostMapping("/batch/lookup")
+    @Operation(summary = "Получить студентов по длинному списку ID, переданному в теле запроса")
+    public StudentBatch findStudentsByIds(@RequestBody List<Long> ids) {
+        return studentService.findStudents(ids);
+    }
+
     @GetMapping("{id}")
-    @Operation(summary = "Получить информацию о студенте по ID")
-    public ResponseEntity<Student> getStudentInfo(@PathVariable Long id) {
+    @Operation(summary = "Получить информацию о студенте по ID (304, если не изменился с версии из If-None-Match)")
+    public ResponseEntity<Student> getStudentInfo(@PathVariable Long id,
+                                                  @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (ifNoneMatch != null) {
+            Long version = studentService.findStudentVersion(id);
+            if (version != null && VersionTag.matches(ifNoneMatch, version)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(VersionTag.of(version)).build();
+            }
+        }
         Student student = studentService.findStudent(id);
         if (student == null) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(student);
+        return ResponseEntity.ok().eTag(VersionTag.of(student.getVersion())).body(student);
     }
 
     @PutMapping("/{id}")
-    @Operation(summary = "Изменить информацию о студенте по его ID")
-    public ResponseEntity<Student> editStudentInfo(@PathVariable Long id, @RequestBody Student student) {
+    @Operation(summary = "Изменить информацию о студенте по его ID (412, если версия не совпала с If-Match)")
+    public ResponseEntity<Student> editStudentInfo(@PathVariable Long id, @RequestBody Student student,
+                                                   @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         student.setId(id);
-        Student foundStudent = studentService.editStudent(student);
+        Student foundStudent = studentService.editStudent(student, VersionTag.parseIfMatch(ifMatch));
         if (foundStudent == null) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(foundStudent);
+        return ResponseEntity.ok().eTag(VersionTag.of(foundStudent.getVersion())).body(foundStudent);
     }
 
     @DeleteMapping("{id}")
@@ -53,21 +96,49 @@ public class StudentController {
     }
 
     @GetMapping
-    @Operation(summary = "Получить список всех студентов")
-    public ResponseEntity<Collection<Student>> getAllStudent() {
-        return ResponseEntity.ok(studentService.getAllStudents());
+    @Operation(summary = "Получить список всех студентов (постранично, если задан limit)")
+    public ResponseEntity<Collection<StudentView>> getAllStudent(@RequestParam(required = false) Integer limit,
+                                                                 @RequestParam(required = false) String next) {
+        if (limit == null && next == null) {
+            return ResponseEntity.ok(studentService.getAllStudents());
+        }
+        return studentService.getStudentsPage(next, limit == null ? KeysetPage.DEFAULT_LIMIT : limit).toResponse();
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Выгрузить всех студентов с факультетами в формате NDJSON")
+    public ResponseEntity<StreamingResponseBody> exportStudents() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(studentService::exportStudents);
     }
 
     @GetMapping("/find/{age}")
-    @Operation(summary = "Найти всех студентов, соответствующих возрасту")
-    public ResponseEntity<Collection<Student>> findByAge(@PathVariable int age) {
-        return ResponseEntity.ok(studentService.findByAge(age));
+    @Operation(summary = "Найти всех студентов, соответствующих возрасту (постранично, если задан limit)")
+    public ResponseEntity<Collection<StudentView>> findByAge(@PathVariable int age,
+                                                             @RequestParam(required = false) Integer limit,
+                                                             @RequestParam(required = false) String next) {
+        if (limit == null && next == null) {
+            return ResponseEntity.ok(studentService.findByAge(age));
+        }
+        return studentService.findByAgeBetweenPage(age, age, next, limit == null ? KeysetPage.DEFAULT_LIMIT : limit).toResponse();
     }
 
     @GetMapping("/find/age_between")
-    @Operation(summary = "Найти всех студентов, соответствующих возрасту в диапазоне")
-    public ResponseEntity<Collection<Student>> findByAgeBetween(@RequestParam int ageMin, @RequestParam int ageMax) {
-        return ResponseEntity.ok(studentService.findByAgeBetween(ageMin, ageMax));
+    @Operation(summary = "Найти всех студентов, соответствующих возрасту в диапазоне (постранично, если задан limit)")
+    public ResponseEntity<Collection<StudentView>> findByAgeBetween(@RequestParam int ageMin, @RequestParam int ageMax,
+                                                                    @RequestParam(required = false) Integer limit,
+                                                                    @RequestParam(required = false) String next) {
+        if (limit == null && next == null) {
+            return ResponseEntity.ok(studentService.findByAgeBetween(ageMin, ageMax));
+        }
+        return studentService.findByAgeBetweenPage(ageMin, ageMax, next, limit == null ? KeysetPage.DEFAULT_LIMIT : limit).toResponse();
+    }
+
+    @GetMapping("/find/age_between/count")
+    @Operation(summary = "Получить число студентов с возрастом в диапазоне")
+    public Long countByAgeBetween(@RequestParam int ageMin, @RequestParam int ageMax) {
+        return studentService.countByAgeBetween(ageMin, ageMax);
     }
 
     @GetMapping("/get_faculty/{id}")
@@ -92,9 +163,21 @@ public class StudentController {
         return studentService.averageAgeOfAllStudents();
     }
 
+    @GetMapping("/statistics")
+    @Operation(summary = "Получить агрегаты по студентам: число, средний, минимальный и максимальный возраст, число по факультетам")
+    public StudentAggregates getStudentAggregates() {
+        return studentService.getStudentAggregates();
+    }
+
+    @GetMapping("/report/{type}")
+    @Operation(summary = "Построить отчет по всем студентам параллельно: count, age-histogram, faculty-histogram")
+    public StudentReport buildReport(@PathVariable String type, @RequestParam(required = false) Integer parallelism) {
+        return studentService.buildReport(type, parallelism);
+    }
+
     @GetMapping("/get_last_five_students")
     @Operation(summary = "Получить пять последних студентов")
-    public Collection<Student> getLastFiveStudents() {
+    public Collection<StudentView> getLastFiveStudents() {
         return studentService.getLastFiveStudents();
     }
     @GetMapping("/print-parallel")
@@ -111,10 +194,18 @@ public class StudentController {
 
     @GetMapping("/get_students_whose_name_starts_with_A")
     @Operation(summary = "Получить всех студентов, чье имя начинается с буквы \"А\"")
-    public ResponseEntity<Collection<Student>> getStudentsWhoseNameStartsWithA() {
+    public ResponseEntity<Collection<StudentView>> getStudentsWhoseNameStartsWithA() {
         return ResponseEntity.ok(studentService.getStudentsWhoseNameStartsWithA());
     }
 
+    @GetMapping("/search")
+    @Operation(summary = "Найти студентов, чье имя начинается с заданной строки (постранично)")
+    public ResponseEntity<Collection<StudentView>> searchByNamePrefix(@RequestParam String prefix,
+                                                                      @RequestParam(defaultValue = "" + KeysetPage.DEFAULT_LIMIT) int limit,
+                                                                      @RequestParam(required = false) String next) {
+        return studentService.searchByNamePrefix(prefix, next, limit).toResponse();
+    }
+
     @GetMapping("/get_students_average_age")
     @Operation(summary = "Получить средний возраст всех студентов")
     public ResponseEntity<Double> getStudentsAverageAge() {
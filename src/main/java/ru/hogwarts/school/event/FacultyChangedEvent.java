@@ -0,0 +1,7 @@
+package ru.hogwarts.school.event;
+
+/**
+ * Событие изменения факультета: {@code before == null} - факультет создан, {@code after == null} - удален.
+ */
+public record FacultyChangedEvent(FacultySnapshot before, FacultySnapshot after) {
+}
@@ -0,0 +1,13 @@
+package ru.hogwarts.school.event;
+
+import ru.hogwarts.school.model.Faculty;
+
+/**
+ * Неизменяемый снимок полей факультета, снятый до или после записи.
+ */
+public record FacultySnapshot(long id, String name, String color, Long version) {
+
+    public static FacultySnapshot of(Faculty faculty) {
+        return new FacultySnapshot(faculty.getId(), faculty.getName(), faculty.getColor(), faculty.getVersion());
+    }
+}
@@ -0,0 +1,15 @@
+package ru.hogwarts.school.event;
+
+/**
+ * Событие изменения студента: {@code before == null} - студент создан, {@code after == null} - удален.
+ */
+public record StudentChangedEvent(StudentSnapshot before, StudentSnapshot after) {
+
+    public static StudentChangedEvent created(StudentSnapshot after) {
+        return new StudentChangedEvent(null, after);
+    }
+
+    public static StudentChangedEvent deleted(StudentSnapshot before) {
+        return new StudentChangedEvent(before, null);
+    }
+}
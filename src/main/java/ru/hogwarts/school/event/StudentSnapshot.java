@@ -0,0 +1,15 @@
+package ru.hogwarts.school.event;
+
+import ru.hogwarts.school.model.Student;
+
+/**
+ * Неизменяемый снимок полей студента, на которые опираются внутрипроцессные агрегаты и индексы.
+ */
+public record StudentSnapshot(long id, String name, int age, Long facultyId) {
+
+    public static StudentSnapshot of(Student student) {
+        // у lazy-прокси факультета id читается без инициализации
+        Long facultyId = student.getFaculty() == null ? null : student.getFaculty().getId();
+        return new StudentSnapshot(student.getId(), student.getName(), student.getAge(), facultyId);
+    }
+}
@@ -6,7 +6,8 @@ import jakarta.persistence.*;
 public class Avatar {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "avatar_seq")
+    @SequenceGenerator(name = "avatar_seq", sequenceName = "avatar_seq", allocationSize = Student.ID_ALLOCATION_SIZE)
     private Long id;
 
     private String filePath;
@@ -16,6 +17,10 @@ public class Avatar {
     @Column(columnDefinition = "bytea")
     private byte[] data;
 
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private AvatarStatus status;
+
     @OneToOne
     private Student student;
 
@@ -59,6 +64,14 @@ public class Avatar {
         this.data = data;
     }
 
+    public AvatarStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(AvatarStatus status) {
+        this.status = status;
+    }
+
     public Student getStudent() {
         return student;
     }
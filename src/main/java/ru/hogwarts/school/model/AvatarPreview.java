@@ -0,0 +1,14 @@
+package ru.hogwarts.school.model;
+
+import org.springframework.util.DigestUtils;
+
+/**
+ * Обложка аватара для /avatar/{id}/avatar-from-db: байты, тип и ETag по содержимому (MD5, как у ShallowEtagHeaderFilter).
+ * Хранится в кэше целиком, поэтому тег считается один раз при загрузке из базы.
+ */
+public record AvatarPreview(byte[] data, String mediaType, String eTag) {
+
+    public AvatarPreview(byte[] data, String mediaType) {
+        this(data, mediaType, "\"" + DigestUtils.md5DigestAsHex(data) + "\"");
+    }
+}
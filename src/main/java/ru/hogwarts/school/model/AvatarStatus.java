@@ -0,0 +1,10 @@
+package ru.hogwarts.school.model;
+
+/**
+ * Состояние обложки аватара: оригинал сохраняется при загрузке, обложка строится в фоне.
+ */
+public enum AvatarStatus {
+    PENDING,
+    READY,
+    FAILED
+}
@@ -0,0 +1,7 @@
+package ru.hogwarts.school.model;
+
+/**
+ * Ответ на загрузку аватара и на запрос его состояния.
+ */
+public record AvatarStatusView(Long studentId, AvatarStatus status) {
+}
@@ -1,11 +1,9 @@
 package ru.hogwarts.school.model;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
-import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.Id;
-import jakarta.persistence.OneToMany;
+import jakarta.persistence.*;
 
 import java.util.Collection;
 import java.util.Objects;
@@ -15,12 +13,17 @@ import java.util.Objects;
 public class Faculty {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "faculty_seq")
+    @SequenceGenerator(name = "faculty_seq", sequenceName = "faculty_seq", allocationSize = Student.ID_ALLOCATION_SIZE)
     private Long id;
 
     private String name;
     private String color;
 
+    @Version
+    @JsonIgnore
+    private Long version;
+
     @OneToMany(mappedBy = "faculty")
     @JsonBackReference
     private Collection<Student> students;
@@ -79,6 +82,14 @@ public class Faculty {
                 '}';
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public Collection<Student> getStudents() {
         return students;
     }
@@ -0,0 +1,15 @@
+package ru.hogwarts.school.model;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Факультет вместе с его студентами. Собирается из факультета, загруженного вместе со студентами,
+ * поэтому сериализация не трогает lazy-коллекции.
+ */
+public record FacultyRoster(Long id, String name, String color, Collection<Student> students) {
+
+    public static FacultyRoster of(Faculty faculty) {
+        return new FacultyRoster(faculty.getId(), faculty.getName(), faculty.getColor(), List.copyOf(faculty.getStudents()));
+    }
+}
@@ -0,0 +1,7 @@
+package ru.hogwarts.school.model;
+
+/**
+ * Проекция факультета для списков и поиска.
+ */
+public record FacultyView(Long id, String name, String color) {
+}
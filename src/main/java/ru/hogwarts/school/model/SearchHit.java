@@ -0,0 +1,20 @@
+package ru.hogwarts.school.model;
+
+public record SearchHit(Kind kind, long id, String text, double score) {
+
+    public enum Kind {
+        STUDENT_NAME, FACULTY_NAME, FACULTY_COLOR;
+
+        public long key(long id) {
+            return id << 2 | ordinal();
+        }
+
+        public static Kind ofKey(long key) {
+            return values()[(int) (key & 3)];
+        }
+
+        public static long idOfKey(long key) {
+            return key >>> 2;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package ru.hogwarts.school.model;
+
+import java.util.Map;
+
+public record StudentAggregates(long count,
+                                Double averageAge,
+                                Integer minAge,
+                                Integer maxAge,
+                                Map<Long, Long> countByFaculty,
+                                long countWithoutFaculty) {
+}
@@ -0,0 +1,9 @@
+package ru.hogwarts.school.model;
+
+import java.util.List;
+
+/**
+ * Результат выборки студентов по списку id: найденные - в порядке запроса, ненайденные id - отдельно.
+ */
+public record StudentBatch(List<StudentView> students, List<Long> missing) {
+}
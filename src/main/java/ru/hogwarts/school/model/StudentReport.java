@@ -0,0 +1,7 @@
+package ru.hogwarts.school.model;
+
+/**
+ * Результат отчета по всей таблице студентов: тип, с каким параллелизмом считался, сколько строк обработано и за сколько.
+ */
+public record StudentReport(String type, int parallelism, long rows, long elapsedMillis, Object result) {
+}
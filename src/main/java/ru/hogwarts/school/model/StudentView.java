@@ -0,0 +1,7 @@
+package ru.hogwarts.school.model;
+
+/**
+ * Проекция студента для списков: только отдаваемые поля, без управляемой сущности и lazy-прокси факультета.
+ */
+public record StudentView(Long id, String name, int age, Long facultyId, String facultyName) {
+}
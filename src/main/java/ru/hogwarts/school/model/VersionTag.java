@@ -0,0 +1,65 @@
+package ru.hogwarts.school.model;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Сильный ETag из версии строки ({@code "3"}) и разбор условных заголовков If-None-Match / If-Match.
+ */
+public final class VersionTag {
+
+    private VersionTag() {
+    }
+
+    /**
+     * ETag версии; {@code null} для еще не сохраненной сущности (заголовок тогда не выставляется).
+     */
+    public static String of(Long version) {
+        return version == null ? null : "\"" + version + "\"";
+    }
+
+    /**
+     * Слабое сравнение для If-None-Match: подходит любой тег из списка (в том числе W/"..."), а также {@code *}.
+     */
+    public static boolean matches(String ifNoneMatch, long version) {
+        return matches(ifNoneMatch, of(version));
+    }
+
+    /**
+     * То же сравнение для произвольного сильного тега в кавычках (например, хеша содержимого).
+     */
+    public static boolean matches(String ifNoneMatch, String tag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*") || candidate.equals(tag) || candidate.equals("W/" + tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Ожидаемая версия из If-Match: {@code null}, если заголовка нет или он равен {@code *}.
+     * Слабый или нечитаемый тег по RFC 9110 совпасть не может, поэтому сразу 412.
+     */
+    public static Long parseIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            try {
+                return Long.parseLong(tag.substring(1, tag.length() - 1));
+            } catch (NumberFormatException ignored) {
+                // обработка ниже
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "If-Match does not match the current version");
+    }
+
+    public static void checkVersion(Long currentVersion, Long expectedVersion) {
+        if (expectedVersion != null && !expectedVersion.equals(currentVersion)) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "If-Match does not match the current version");
+        }
+    }
+}
@@ -1,14 +1,34 @@
 package ru.hogwarts.school.repository;
 
 import org.springframework.data.domain.Page;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.model.AvatarPreview;
+import ru.hogwarts.school.model.AvatarStatus;
+import ru.hogwarts.school.model.AvatarStatusView;
 import org.springframework.data.domain.Pageable;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface AvatarRepository extends CrudRepository<Avatar, Long> {
     Optional<Avatar> findByStudent_Id(Long id);
 
+    @Query("select new ru.hogwarts.school.model.AvatarPreview(a.data, a.mediaType) from Avatar a"
+            + " where a.student.id = :studentId and a.status = ru.hogwarts.school.model.AvatarStatus.READY")
+    Optional<AvatarPreview> findPreviewByStudentId(long studentId);
+
+    @Query("select new ru.hogwarts.school.model.AvatarStatusView(a.student.id, a.status) from Avatar a where a.student.id = :studentId")
+    Optional<AvatarStatusView> findStatusByStudentId(long studentId);
+
+    @Query("select a.id, a.student.id, a.filePath from Avatar a where a.status = ru.hogwarts.school.model.AvatarStatus.PENDING order by a.id")
+    List<Object[]> findPending();
+
+    @Modifying
+    @Query("update Avatar a set a.data = :data, a.status = :status where a.id = :id")
+    int updatePreview(long id, byte[] data, AvatarStatus status);
+
     Page<Avatar> findAll(Pageable pageable);
 }
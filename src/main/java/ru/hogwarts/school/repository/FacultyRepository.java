@@ -1,12 +1,35 @@
 package ru.hogwarts.school.repository;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.FacultyView;
 
-import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 public interface FacultyRepository extends JpaRepository<Faculty, Long> {
-    Collection<Faculty> findByNameIgnoreCase(String name);
+    String FACULTY_VIEW = "select new ru.hogwarts.school.model.FacultyView(f.id, f.name, f.color) from Faculty f ";
 
-    Collection<Faculty> findByColorIgnoreCase(String color);
+    @Query(FACULTY_VIEW + "order by f.id")
+    List<FacultyView> findAllViews();
+
+    /**
+     * Факультеты с таким названием, а если таких нет - с таким цветом (без учета регистра), одним запросом.
+     * Обе ветки идут по индексам faculty_lower_name_index и faculty_lower_color_index.
+     */
+    @Query(FACULTY_VIEW + "where lower(f.name) = lower(:request) " +
+            "or (lower(f.color) = lower(:request) " +
+            "and not exists (select n.id from Faculty n where lower(n.name) = lower(:request)))")
+    List<FacultyView> findViewsByNameOrColorIgnoreCase(String request);
+
+    @Query("select f.version from Faculty f where f.id = :id")
+    Optional<Long> findVersionById(long id);
+
+    @Query("select distinct f from Faculty f left join fetch f.students where f.id = :id")
+    Optional<Faculty> findWithStudentsById(Long id);
+
+    @Query(FACULTY_VIEW + "where f.id > :afterId order by f.id")
+    List<FacultyView> findViewsAfter(long afterId, Limit limit);
 }
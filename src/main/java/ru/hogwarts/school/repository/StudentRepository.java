@@ -1,17 +1,64 @@
 package ru.hogwarts.school.repository;
 
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.model.StudentView;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 public interface StudentRepository extends JpaRepository<Student, Long> {
-    Collection<Student> findByAge(int age);
+    int EXPORT_FETCH_SIZE = 500;
+
+    // списки отдаются проекциями: без управляемых сущностей, снимков для dirty checking и lazy-прокси
+    String STUDENT_VIEW = "select new ru.hogwarts.school.model.StudentView(s.id, s.name, s.age, f.id, f.name) " +
+            "from Student s left join s.faculty f ";
+
+    @Query(STUDENT_VIEW + "order by s.id")
+    List<StudentView> findAllViews();
+
+    @Query(STUDENT_VIEW + "where s.id > :afterId order by s.id")
+    List<StudentView> findViewsAfter(long afterId, Limit limit);
+
+    @Query(STUDENT_VIEW + "order by s.id limit :limit offset :offset")
+    List<StudentView> findViewsSlice(int offset, int limit);
+
+    @Query(STUDENT_VIEW + "where s.id between :fromId and :toId order by s.id")
+    List<StudentView> findViewsByIdBetween(long fromId, long toId);
+
+    @Query("select min(s.id), max(s.id) from Student s")
+    List<Object[]> findIdBounds();
+
+    @Query(STUDENT_VIEW + "where s.id in :ids")
+    List<StudentView> findViewsByIdIn(Collection<Long> ids);
+
+    @Query(STUDENT_VIEW + "where s.age between :ageMin and :ageMax order by s.age, s.id")
+    List<StudentView> findViewsByAgeBetween(int ageMin, int ageMax);
 
-    Collection<Student> findByAgeBetween(int ageMax, int ageMin);
+    long countByAgeBetween(int ageMin, int ageMax);
 
-    Collection<Student> findByFacultyId(Long facultyId);
+    @Query(STUDENT_VIEW + "where s.age between :ageMin and :ageMax " +
+            "and (s.age > :afterAge or (s.age = :afterAge and s.id > :afterId)) order by s.age, s.id")
+    List<StudentView> findViewsByAgePage(int ageMin, int ageMax, int afterAge, long afterId, Limit limit);
+
+    @Query(STUDENT_VIEW + "where f.id = :facultyId order by s.id")
+    List<StudentView> findViewsByFacultyId(Long facultyId);
+
+    @Query("select s.version from Student s where s.id = :id")
+    Optional<Long> findVersionById(long id);
+
+    @EntityGraph(attributePaths = "faculty")
+    Optional<Student> findWithFacultyById(Long id);
 
     @Query(value = "SELECT count(*) as student from student", nativeQuery = true)
     Integer countOfAllStudents();
@@ -19,8 +66,29 @@ public interface StudentRepository extends JpaRepository<Student, Long> {
     @Query(value = "SELECT avg(age) as age from student", nativeQuery = true)
     Double averageAgeOfAllStudents();
 
-    @Query(value = "SELECT * FROM student ORDER BY id DESC LIMIT 5;", nativeQuery = true)
-    Collection<Student> getLastFiveStudents();
+    @Query(STUDENT_VIEW + "order by s.id desc")
+    List<StudentView> findLastViews(Limit limit);
+
+    // like 'prefix%' с экранированием спецсимволов, служит индексом student_name_pattern_index
+    @Query(STUDENT_VIEW + "where s.name like ?#{escape([0])}% escape ?#{escapeCharacter()} order by s.id")
+    List<StudentView> findViewsByNamePrefix(String prefix);
+
+    @Query(STUDENT_VIEW + "where s.name like ?#{escape([0])}% escape ?#{escapeCharacter()} and s.id > ?2 order by s.id")
+    List<StudentView> findViewsByNamePrefix(String prefix, long afterId, Limit limit);
+
+    @Query("select s.age, f.id, count(s) from Student s left join s.faculty f group by s.age, f.id")
+    List<Object[]> countGroupedByAgeAndFaculty();
+
+    @Query("select s from Student s left join fetch s.faculty order by s.id")
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+    Stream<Student> streamAllWithFaculty();
+
+    @Query("select s.id, s.name from Student s")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE))
+    Stream<Object[]> streamIdAndName();
 
+    @Query("select s.id, s.age from Student s")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE))
+    Stream<Object[]> streamIdAndAge();
 
 }
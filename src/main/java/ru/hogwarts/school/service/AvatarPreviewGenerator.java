@@ -0,0 +1,45 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Маленькая обложка аватара шириной {@value #PREVIEW_WIDTH} пикселей с сохранением пропорций.
+ */
+@Component
+public class AvatarPreviewGenerator {
+    private static final Logger logger = LoggerFactory.getLogger(AvatarPreviewGenerator.class);
+
+    public static final int PREVIEW_WIDTH = 100;
+
+    /**
+     * @param format формат ImageIO для записи обложки (обычно расширение исходного файла)
+     */
+    public byte[] generatePreview(Path filePath, String format) throws IOException {
+        logger.info("Was invoked method for generate student avatar preview");
+        try (InputStream inputStream = Files.newInputStream(filePath);
+             BufferedInputStream bis = new BufferedInputStream(inputStream, 1024);
+             ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+            BufferedImage image = ImageIO.read(bis);
+
+            int height = image.getHeight() / (image.getWidth() / PREVIEW_WIDTH);
+            BufferedImage preview = new BufferedImage(PREVIEW_WIDTH, height, image.getType());
+            Graphics2D graphics = preview.createGraphics();
+            graphics.drawImage(image, 0, 0, PREVIEW_WIDTH, height, null);
+            graphics.dispose();
+            ImageIO.write(preview, format, baos);
+            return baos.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package ru.hogwarts.school.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+import ru.hogwarts.school.model.AvatarStatus;
+import ru.hogwarts.school.repository.AvatarRepository;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Фоновое построение обложек аватаров. В очередь принимается не больше {@code school.avatar.preview-queue-capacity}
+ * задач сверх занятых потоков: место резервируется до записи файла, а при полной очереди загрузка получает 503.
+ * Картинка читается и масштабируется без соединения с базой, соединение берется только на итоговый update.
+ */
+@Component
+public class AvatarPreviewQueue {
+    private static final Logger logger = LoggerFactory.getLogger(AvatarPreviewQueue.class);
+
+    private final AvatarPreviewGenerator previewGenerator;
+    private final AvatarRepository avatarRepository;
+    private final Cache previewCache;
+    private final TransactionTemplate transaction;
+    private final Semaphore slots;
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong generations = new AtomicLong();
+    private final Map<Long, Long> latestGeneration = new ConcurrentHashMap<>(); // id студента -> последнее зарезервированное место
+
+    public AvatarPreviewQueue(AvatarPreviewGenerator previewGenerator, AvatarRepository avatarRepository,
+                              CacheManager cacheManager, PlatformTransactionManager transactionManager, MeterRegistry registry,
+                              @Value("${school.avatar.preview-workers:2}") int workers,
+                              @Value("${school.avatar.preview-queue-capacity:100}") int capacity) {
+        this.previewGenerator = previewGenerator;
+        this.avatarRepository = avatarRepository;
+        this.previewCache = cacheManager.getCache(AvatarService.AVATAR_PREVIEW_CACHE);
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.slots = new Semaphore(workers + capacity);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                task -> new Thread(task, "avatar-preview-" + threadNumber.incrementAndGet()));
+        Gauge.builder("school.avatar.preview.pending", executor, pool -> pool.getQueue().size() + pool.getActiveCount())
+                .description("Avatar previews queued or being generated")
+                .register(registry);
+    }
+
+    /**
+     * Место в очереди под новый оригинал студента; должно быть либо передано в {@link #submit}, либо возвращено
+     * через {@link Slot#release()}. Резервирование сразу делает устаревшими задачи по прежнему файлу студента,
+     * поэтому место берется до записи файла: задача, читающая перезаписываемый файл, свою обложку уже не сохранит.
+     */
+    public final class Slot {
+        private final long studentId;
+        private final long generation;
+        private boolean released;
+
+        private Slot(long studentId) {
+            this.studentId = studentId;
+            this.generation = generations.incrementAndGet();
+            latestGeneration.put(studentId, generation);
+        }
+
+        public void release() {
+            if (!released) {
+                released = true;
+                latestGeneration.remove(studentId, generation);
+                slots.release();
+            }
+        }
+
+        private boolean isLatest() {
+            Long latest = latestGeneration.get(studentId);
+            return latest != null && latest == generation;
+        }
+    }
+
+    public Slot reserve(long studentId) {
+        if (!slots.tryAcquire()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Avatar processing queue is full, retry later");
+        }
+        return new Slot(studentId);
+    }
+
+    /**
+     * Резервирует место без ожидания; {@code null}, если очередь заполнена.
+     */
+    Slot tryReserve(long studentId) {
+        return slots.tryAcquire() ? new Slot(studentId) : null;
+    }
+
+    public void submit(Slot slot, long avatarId, Path file, String format) {
+        try {
+            executor.execute(() -> {
+                try {
+                    process(slot, avatarId, file, format);
+                } finally {
+                    slot.release();
+                }
+            });
+        } catch (RejectedExecutionException e) { // пул уже остановлен
+            slot.release();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Avatar processing is shutting down");
+        }
+    }
+
+    private void process(Slot slot, long avatarId, Path file, String format) {
+        byte[] preview = null;
+        try {
+            preview = previewGenerator.generatePreview(file, format);
+        } catch (Exception e) {
+            logger.warn("Failed to generate preview for avatar {} from {}", avatarId, file, e);
+        }
+        // повторная загрузка, пока строилась эта обложка: файл уже другой, итог запишет ее задача
+        if (!slot.isLatest()) {
+            logger.debug("Skipping outdated preview for avatar {}", avatarId);
+            return;
+        }
+        AvatarStatus status = preview == null ? AvatarStatus.FAILED : AvatarStatus.READY;
+        try {
+            savePreview(avatarId, preview, status);
+        } catch (RuntimeException e) {
+            logger.error("Failed to save {} preview for avatar {}", status, avatarId, e);
+            if (status == AvatarStatus.FAILED || !tryMarkFailed(avatarId)) {
+                return; // аватар остался PENDING и будет поставлен в очередь заново при старте
+            }
+            status = AvatarStatus.FAILED;
+        }
+        previewCache.evict(slot.studentId);
+        logger.debug("Avatar {} preview is {}", avatarId, status);
+    }
+
+    private boolean tryMarkFailed(long avatarId) {
+        try {
+            savePreview(avatarId, null, AvatarStatus.FAILED);
+            return true;
+        } catch (RuntimeException e) {
+            logger.error("Failed to mark avatar {} as failed", avatarId, e);
+            return false;
+        }
+    }
+
+    private void savePreview(long avatarId, byte[] data, AvatarStatus status) {
+        transaction.executeWithoutResult(tx -> avatarRepository.updatePreview(avatarId, data, status));
+    }
+
+    public int availableSlots() {
+        return slots.availablePermits();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
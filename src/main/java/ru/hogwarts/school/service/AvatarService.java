@@ -1,22 +1,33 @@
 package ru.hogwarts.school.service;
 
-import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.multipart.MultipartFile;
+import ru.hogwarts.school.config.PrimaryRead;
 import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.model.AvatarPreview;
+import ru.hogwarts.school.model.AvatarStatus;
+import ru.hogwarts.school.model.AvatarStatusView;
 import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.repository.AvatarRepository;
 
-import javax.imageio.ImageIO;
-import java.awt.*;
-import java.awt.image.BufferedImage;
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
 
 import static java.nio.file.StandardOpenOption.CREATE_NEW;
@@ -24,80 +35,128 @@ import static java.nio.file.StandardOpenOption.CREATE_NEW;
 @Service
 @Transactional
 public class AvatarService {
+    public static final String AVATAR_PREVIEW_CACHE = "avatarPreview";
+    public static final Duration PREVIEW_MAX_AGE = Duration.ofMinutes(1); // новая обложка видна клиентам не позже чем через минуту
 
     @Value("${path.to.avatars.folder}")
     private String avatarsDir;
 
     private final StudentService studentService;
     private final AvatarRepository avatarRepository;
+    private final AvatarPreviewQueue previewQueue;
+    private final CacheManager cacheManager;
+    private final TransactionTemplate transaction;
 
-    public AvatarService(StudentService studentService, AvatarRepository avatarRepository) {
+    public AvatarService(StudentService studentService, AvatarRepository avatarRepository,
+                         AvatarPreviewQueue previewQueue, CacheManager cacheManager,
+                         PlatformTransactionManager transactionManager) {
         this.studentService = studentService;
         this.avatarRepository = avatarRepository;
+        this.previewQueue = previewQueue;
+        this.cacheManager = cacheManager;
+        this.transaction = new TransactionTemplate(transactionManager);
     }
 
     private static final Logger logger = LoggerFactory.getLogger(AvatarService.class);
 
-    public void uploadAvatar(long studentId, MultipartFile file) throws IOException { //сохранение файла
+    /**
+     * Сохраняет оригинал и ставит построение обложки в очередь; статус аватара до ее готовности - PENDING.
+     * Без общей транзакции: файл пишется без соединения с базой, метаданные сохраняются короткой транзакцией.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public AvatarStatusView uploadAvatar(long studentId, MultipartFile file) throws IOException { //сохранение файла
         logger.info("Uploading avatar for studentId = {}, filename = {}", studentId, file.getOriginalFilename());
 
         Student student = studentService.findStudent(studentId);
-
-        Path filePath = Path.of(avatarsDir, studentId + "." + getExtension(file.getOriginalFilename()));
-        logger.debug("Avatar file path: {}", filePath);
-        Files.createDirectories(filePath.getParent());
-        Files.deleteIfExists(filePath);
-
-        try (InputStream inputStream = file.getInputStream();
-             OutputStream outputStream = Files.newOutputStream(filePath, CREATE_NEW);
-             BufferedInputStream bis = new BufferedInputStream(inputStream, 1024);
-             BufferedOutputStream bos = new BufferedOutputStream(outputStream, 1024)
-        ) {
-            bis.transferTo(bos);
+        if (student == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Student not found with id " + studentId);
         }
-
-        Avatar avatar = findAvatar(studentId);
-        if (avatar == null) {
-            avatar = new Avatar();
+        AvatarPreviewQueue.Slot slot = previewQueue.reserve(studentId); // до записи файла: 503 при полной очереди, прежняя задача устаревает
+        try {
+            String extension = getExtension(file.getOriginalFilename());
+            Path filePath = Path.of(avatarsDir, studentId + "." + extension);
+            logger.debug("Avatar file path: {}", filePath);
+            Files.createDirectories(filePath.getParent());
+            Files.deleteIfExists(filePath);
+
+            try (InputStream inputStream = file.getInputStream();
+                 OutputStream outputStream = Files.newOutputStream(filePath, CREATE_NEW);
+                 BufferedInputStream bis = new BufferedInputStream(inputStream, 1024);
+                 BufferedOutputStream bos = new BufferedOutputStream(outputStream, 1024)
+            ) {
+                bis.transferTo(bos);
+            }
+
+            Avatar avatar = transaction.execute(tx -> {
+                Avatar found = avatarRepository.findByStudent_Id(studentId).orElseGet(Avatar::new);
+                found.setStudent(student);
+                found.setFilePath(filePath.toString());
+                found.setFileSize(file.getSize());
+                found.setMediaType(file.getContentType());
+                found.setData(null);
+                found.setStatus(AvatarStatus.PENDING);
+                return avatarRepository.save(found);
+            });
+            cacheManager.getCache(AVATAR_PREVIEW_CACHE).evict(studentId); // после коммита: старая обложка больше не прочитается
+            previewQueue.submit(slot, avatar.getId(), filePath, extension);
+            return new AvatarStatusView(studentId, AvatarStatus.PENDING);
+        } catch (IOException | RuntimeException e) {
+            slot.release();
+            throw e;
         }
-        avatar.setStudent(student);
-        avatar.setFilePath(filePath.toString());
-        avatar.setFileSize(file.getSize());
-        avatar.setMediaType(file.getContentType());
-        avatar.setData(generateAvatarPreview(filePath));
-
-        avatarRepository.save(avatar);
-
     }
 
-    private byte[] generateAvatarPreview(Path filePath) throws IOException { // создание маленькой обложки
-        logger.info("Was invoked method for generate student avatar preview");
-        try (InputStream inputStream = Files.newInputStream(filePath);
-             BufferedInputStream bis = new BufferedInputStream(inputStream, 1024);
-             ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            BufferedImage image = ImageIO.read(bis);
-
-            int height = image.getHeight() / (image.getWidth() / 100);
-            BufferedImage preview = new BufferedImage(100, height, image.getType());
-            Graphics2D graphics = preview.createGraphics();
-            graphics.drawImage(image, 0, 0, 100, height, null);
-            graphics.dispose();
-            ImageIO.write(preview, getExtension(filePath.getFileName().toString()), baos);
-            return baos.toByteArray();
+    /**
+     * Задачи очереди живут только в памяти: аватары, оставшиеся PENDING после перезапуска, ставятся в очередь заново.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void resumePendingPreviews() {
+        List<Object[]> pending = avatarRepository.findPending();
+        int submitted = 0;
+        for (Object[] row : pending) {
+            AvatarPreviewQueue.Slot slot = previewQueue.tryReserve((Long) row[1]);
+            if (slot == null) {
+                logger.warn("Avatar preview queue is full, {} avatars stay pending until re-upload", pending.size() - submitted);
+                return;
+            }
+            Path filePath = Path.of((String) row[2]);
+            previewQueue.submit(slot, (Long) row[0], filePath, getExtension(filePath.getFileName().toString()));
+            submitted++;
         }
+        logger.debug("Resumed {} pending avatar previews", submitted);
     }
 
+    @Transactional(readOnly = true)
+    public AvatarStatusView findAvatarStatus(long studentId) {
+        logger.info("Was invoked method for find avatar status by student id");
+        return avatarRepository.findStatusByStudentId(studentId).orElse(null);
+    }
+
+    @Transactional(readOnly = true)
     public Avatar findAvatar(long studentId) {
         logger.info("Was invoked method for find avatar by student id");
         return avatarRepository.findByStudent_Id(studentId).orElse(null);
     }
 
+    /**
+     * Обложка без загрузки сущности Avatar и студента; {@code null}, если аватара нет.
+     */
+    @PrimaryRead
+    @Cacheable(cacheNames = AVATAR_PREVIEW_CACHE, unless = "#result == null")
+    public AvatarPreview findAvatarPreview(long studentId) {
+        logger.info("Was invoked method for find avatar preview by student id");
+        logger.debug("Loading avatar preview for studentId = {}", studentId);
+        return avatarRepository.findPreviewByStudentId(studentId).orElse(null);
+    }
+
     private String getExtension(String fileName) {
         logger.info("Was invoked method for get extension");
         logger.debug("Was invoked method getExtension for filename: {}", fileName);
         return fileName.substring(fileName.lastIndexOf(".") + 1);
     }
 
+    @Transactional(readOnly = true)
     public List<Avatar> getAllAvatars(Integer pageNumber, Integer pageSize) {
         PageRequest pageRequest = PageRequest.of(pageNumber - 1, pageSize);
         logger.info("Was invoked method for get all avatars");
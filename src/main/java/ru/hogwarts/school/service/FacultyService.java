@@ -2,22 +2,53 @@ package ru.hogwarts.school.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.server.ResponseStatusException;
+import ru.hogwarts.school.config.PrimaryRead;
+import ru.hogwarts.school.event.FacultyChangedEvent;
+import ru.hogwarts.school.event.FacultySnapshot;
 import ru.hogwarts.school.model.Faculty;
-import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.model.FacultyRoster;
+import ru.hogwarts.school.model.FacultyView;
+import ru.hogwarts.school.model.KeysetPage;
+import ru.hogwarts.school.model.StudentView;
+import ru.hogwarts.school.model.VersionTag;
 import ru.hogwarts.school.repository.FacultyRepository;
 import ru.hogwarts.school.repository.StudentRepository;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.stream.Stream;
 
 @Service
 public class FacultyService {
+    public static final String FACULTY_CACHE = "faculty";
+    public static final String ALL_FACULTIES_CACHE = "faculties";
+    public static final String FACULTY_SEARCH_CACHE = "facultySearch";
+    private static final String ALL_FACULTIES_KEY = "all";
+
     private final FacultyRepository facultyRepository;
     private final StudentRepository studentRepository;
+    private final CacheManager cacheManager;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public FacultyService(FacultyRepository facultyRepository, StudentRepository studentRepository1) {
+    public FacultyService(FacultyRepository facultyRepository, StudentRepository studentRepository1,
+                          CacheManager cacheManager, ApplicationEventPublisher eventPublisher) {
         this.facultyRepository = facultyRepository;
         this.studentRepository = studentRepository1;
+        this.cacheManager = cacheManager;
+        this.eventPublisher = eventPublisher;
     }
 
     private static final Logger logger = LoggerFactory.getLogger(FacultyService.class);
@@ -25,66 +56,189 @@ public class FacultyService {
     public Faculty createFaculty(Faculty faculty) {
         logger.info("Was invoked method for create faculty");
         logger.debug("Creating faculty with details: {}", faculty);
-        return facultyRepository.save(faculty);
+        faculty.setId(null);
+        Faculty savedFaculty = facultyRepository.save(faculty);
+        publishChange(null, savedFaculty);
+        return savedFaculty;
     }
 
+    /**
+     * Факультет по id. В кэше {@value #FACULTY_CACHE} лежат неизменяемые снимки, а каждый вызов получает
+     * свою копию сущности: изменения одного вызывающего не видны другим и не попадают в кэш.
+     */
+    @PrimaryRead
     public Faculty findFaculty(long id) {
         logger.info("Was invoked method for find faculty");
+        Cache facultyCache = cacheManager.getCache(FACULTY_CACHE);
+        FacultySnapshot cached = facultyCache.get(id, FacultySnapshot.class);
+        if (cached != null) {
+            return toFaculty(cached);
+        }
         logger.debug("Trying to find faculty with id = {}", id);
         Faculty faculty = facultyRepository.findById(id).orElse(null);
         if (faculty == null) {
             logger.warn("Faculty not found with id = {}", id);
+            return null;
         }
+        facultyCache.putIfAbsent(id, FacultySnapshot.of(faculty)); // не затирать снимок, положенный коммитом во время чтения
         return faculty;
     }
 
+    private static Faculty toFaculty(FacultySnapshot snapshot) {
+        Faculty faculty = new Faculty(snapshot.id(), snapshot.name(), snapshot.color());
+        faculty.setVersion(snapshot.version());
+        return faculty;
+    }
+
+    @Transactional
     public Faculty editFaculty(Faculty faculty) {
+        return editFaculty(faculty, null);
+    }
+
+    /**
+     * Изменяет факультет, если его версия равна {@code expectedVersion} ({@code null} - без проверки).
+     * Возвращает {@code null}, если факультета нет.
+     */
+    @Transactional
+    public Faculty editFaculty(Faculty faculty, Long expectedVersion) {
         logger.info("Was invoked method for edit faculty");
-        logger.debug("Editing faculty with new data: {}", faculty);
-        return facultyRepository.save(faculty);
+        logger.debug("Editing faculty with new data: {}, expected version: {}", faculty, expectedVersion);
+        Faculty found = faculty.getId() == null ? null : facultyRepository.findById(faculty.getId()).orElse(null);
+        if (found == null) {
+            return null;
+        }
+        VersionTag.checkVersion(found.getVersion(), expectedVersion);
+        FacultySnapshot previousFaculty = FacultySnapshot.of(found);
+        found.setName(faculty.getName());
+        found.setColor(faculty.getColor());
+        try {
+            facultyRepository.flush();
+        } catch (OptimisticLockingFailureException e) {
+            throw new ResponseStatusException(expectedVersion == null ? HttpStatus.CONFLICT : HttpStatus.PRECONDITION_FAILED,
+                    "Faculty was modified concurrently");
+        }
+        publishChange(previousFaculty, found);
+        return found;
+    }
+
+    /**
+     * Версия факультета для If-None-Match: из кэша {@value #FACULTY_CACHE}, а при промахе - запросом одной колонки.
+     */
+    @Transactional(readOnly = true)
+    public Long findFacultyVersion(long id) {
+        logger.info("Was invoked method findFacultyVersion");
+        FacultySnapshot cached = cacheManager.getCache(FACULTY_CACHE).get(id, FacultySnapshot.class);
+        if (cached != null) {
+            return cached.version();
+        }
+        logger.debug("Looking for version of faculty with id = {}", id);
+        return facultyRepository.findVersionById(id).orElse(null);
     }
 
     public void deleteFaculty(long id) {
         logger.info("Was invoked method for delete faculty");
         logger.debug("Deleting faculty with id = {}", id);
+        FacultySnapshot previousFaculty = facultyRepository.findById(id).map(FacultySnapshot::of).orElse(null);
         facultyRepository.deleteById(id);
+        if (previousFaculty != null) {
+            publishChange(previousFaculty, null);
+        }
+    }
+
+    private void publishChange(FacultySnapshot previousFaculty, Faculty savedFaculty) {
+        eventPublisher.publishEvent(new FacultyChangedEvent(previousFaculty,
+                savedFaculty == null ? null : FacultySnapshot.of(savedFaculty)));
+    }
+
+    /**
+     * Кэши обновляются только после коммита: иначе параллельное чтение успело бы закэшировать старую строку
+     * до коммита, а If-None-Match - ответить версией, которая может откатиться.
+     * Сбрасываются только те ключи, на которые влияет изменение.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFacultyChanged(FacultyChangedEvent event) {
+        cacheManager.getCache(ALL_FACULTIES_CACHE).evict(ALL_FACULTIES_KEY);
+        Cache searchCache = cacheManager.getCache(FACULTY_SEARCH_CACHE);
+        Cache facultyCache = cacheManager.getCache(FACULTY_CACHE);
+        if (event.before() != null) {
+            searchKeysOf(event.before()).forEach(searchCache::evict);
+        }
+        if (event.after() != null) {
+            searchKeysOf(event.after()).forEach(searchCache::evict);
+            facultyCache.put(event.after().id(), event.after());
+        } else {
+            facultyCache.evict(event.before().id());
+        }
+    }
+
+    private static List<String> searchKeysOf(FacultySnapshot faculty) {
+        return Stream.of(faculty.name(), faculty.color())
+                .filter(Objects::nonNull)
+                .map(FacultyService::searchKey)
+                .toList();
     }
 
-    public Collection<Faculty> getAllFaculties() {
+    public static String searchKey(String request) {
+        return request.toLowerCase(Locale.ROOT);
+    }
+
+    @Cacheable(cacheNames = ALL_FACULTIES_CACHE, key = "'" + ALL_FACULTIES_KEY + "'")
+    @PrimaryRead
+    public Collection<FacultyView> getAllFaculties() {
         logger.info("Was invoked method for getAllFaculties");
-        Collection<Faculty> facultyCollection = facultyRepository.findAll();
+        Collection<FacultyView> facultyCollection = List.copyOf(facultyRepository.findAllViews());
         logger.debug("Found {} faculties", facultyCollection.size());
         return facultyCollection;
     }
 
-    public Collection<Faculty> findByNameOrColor(String request) {
+    @Transactional(readOnly = true)
+    public KeysetPage<FacultyView> getFacultiesPage(String next, int limit) {
+        logger.info("Was invoked method getFacultiesPage");
+        int pageSize = KeysetPage.checkLimit(limit);
+        long afterId = KeysetPage.decodeIdCursor(next);
+        logger.debug("Getting {} faculties after id = {}", pageSize, afterId);
+        return KeysetPage.of(facultyRepository.findViewsAfter(afterId, Limit.of(pageSize + 1)),
+                pageSize, FacultyView::id);
+    }
+
+    @Cacheable(cacheNames = FACULTY_SEARCH_CACHE, key = "T(ru.hogwarts.school.service.FacultyService).searchKey(#request)", unless = "#result == null")
+    @PrimaryRead
+    public Collection<FacultyView> findByNameOrColor(String request) {
         logger.info("Was invoked method findByNameOrColor");
         logger.debug("Finding faculties by name or color: {}", request);
-        Collection<Faculty> byName = facultyRepository.findByNameIgnoreCase(request);
-        if (byName != null && !byName.isEmpty()) {
-            logger.debug("Found {} faculties by name matching '{}'", byName.size(), request);
-            return byName;
-        }
-        Collection<Faculty> byColor = facultyRepository.findByColorIgnoreCase(request);
-        if (byColor != null && !byColor.isEmpty()) {
-            logger.debug("Found {} faculties by color matching '{}'", byColor.size(), request);
-            return byColor;
+        Collection<FacultyView> faculties = List.copyOf(facultyRepository.findViewsByNameOrColorIgnoreCase(request));
+        if (!faculties.isEmpty()) {
+            logger.debug("Found {} faculties by name or color matching '{}'", faculties.size(), request);
+            return faculties; // в кэше - неизменяемый список
         }
         logger.warn("No faculties found by name or color matching '{}'", request);
         return null;
     }
 
-    public Collection<Student> getStudentsByFacultyId(Long facultyId) {
+    @Transactional(readOnly = true)
+    public FacultyRoster getFacultyRoster(Long facultyId) {
+        logger.info("Was invoked method getFacultyRoster");
+        logger.debug("Getting roster of faculty id = {}", facultyId);
+        FacultyRoster roster = facultyRepository.findWithStudentsById(facultyId)
+                .map(FacultyRoster::of)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Faculty not found"));
+        logger.debug("Found {} students in faculty id = {}", roster.students().size(), facultyId);
+        return roster;
+    }
+
+    @Transactional(readOnly = true)
+    public Collection<StudentView> getStudentsByFacultyId(Long facultyId) {
         logger.info("Was invoked method getStudentsByFacultyId");
         logger.debug("Getting students by faculty id = {}", facultyId);
-        Collection<Student> students = studentRepository.findByFacultyId(facultyId);
+        Collection<StudentView> students = studentRepository.findViewsByFacultyId(facultyId);
         logger.debug("Found {} students in faculty id = {}", students.size(), facultyId);
         return students;
     }
 
+    @Transactional(readOnly = true)
     public Collection<String> getMostLongestName() {
         logger.info("Was invoked method getMostLongestName");
-        Collection<String> names = facultyRepository.findAll().stream().map(Faculty::getName).toList();
+        Collection<String> names = facultyRepository.findAllViews().stream().map(FacultyView::name).toList();
         int maxLength = names.stream().mapToInt(String::length).max().orElse(0);
         logger.debug("Most longest names is {} symbols", maxLength);
         return names.stream().filter(name -> name.length() == maxLength).toList();
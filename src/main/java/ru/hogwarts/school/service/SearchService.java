@@ -0,0 +1,122 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.server.ResponseStatusException;
+import ru.hogwarts.school.config.PrimaryRead;
+import ru.hogwarts.school.event.FacultyChangedEvent;
+import ru.hogwarts.school.event.FacultySnapshot;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.SearchHit;
+import ru.hogwarts.school.model.SearchHit.Kind;
+import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Нечеткий поиск "по мере ввода" по именам студентов, названиям и цветам факультетов.
+ * Индекс строится в памяти при старте и обновляется событиями изменения студентов и факультетов.
+ * Загрузка собирает новый индекс рядом с рабочим: события, пришедшие за время загрузки, применяются к обоим,
+ * запоминаются и повторяются на новом индексе перед подменой - иначе строка, прочитанная до удаления
+ * или переименования, вернула бы старое состояние.
+ */
+@Service
+public class SearchService {
+    private static final Logger logger = LoggerFactory.getLogger(SearchService.class);
+
+    static final int MAX_LIMIT = 100;
+    static final double MIN_COVERAGE = 0.3;
+
+    private volatile TrigramIndex index = new TrigramIndex();
+    private List<Consumer<TrigramIndex>> changesDuringLoad; // не null, пока идет загрузка; под монитором сервиса
+    private final StudentRepository studentRepository;
+    private final FacultyRepository facultyRepository;
+
+    public SearchService(StudentRepository studentRepository, FacultyRepository facultyRepository) {
+        this.studentRepository = studentRepository;
+        this.facultyRepository = facultyRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @PrimaryRead
+    public void loadIndex() {
+        logger.info("Loading search index");
+        synchronized (this) {
+            changesDuringLoad = new ArrayList<>();
+        }
+        TrigramIndex loaded = new TrigramIndex();
+        try {
+            try (Stream<Object[]> students = studentRepository.streamIdAndName()) {
+                students.forEach(row -> loaded.put(Kind.STUDENT_NAME.key((Long) row[0]), (String) row[1]));
+            }
+            for (Faculty faculty : facultyRepository.findAll()) {
+                putFaculty(loaded, FacultySnapshot.of(faculty));
+            }
+            synchronized (this) {
+                // изменение задает итоговое состояние документа, поэтому повтор уже попавшего в загрузку безопасен
+                changesDuringLoad.forEach(change -> change.accept(loaded));
+                logger.debug("Search index loaded, documents: {}, changes replayed: {}", loaded.size(), changesDuringLoad.size());
+                index = loaded;
+            }
+        } finally {
+            synchronized (this) {
+                changesDuringLoad = null;
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStudentChanged(StudentChangedEvent event) {
+        if (event.after() != null) {
+            apply(index -> index.put(Kind.STUDENT_NAME.key(event.after().id()), event.after().name()));
+        } else {
+            apply(index -> index.remove(Kind.STUDENT_NAME.key(event.before().id())));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFacultyChanged(FacultyChangedEvent event) {
+        if (event.after() != null) {
+            apply(index -> putFaculty(index, event.after()));
+        } else {
+            apply(index -> {
+                index.remove(Kind.FACULTY_NAME.key(event.before().id()));
+                index.remove(Kind.FACULTY_COLOR.key(event.before().id()));
+            });
+        }
+    }
+
+    private synchronized void apply(Consumer<TrigramIndex> change) {
+        change.accept(index);
+        if (changesDuringLoad != null) {
+            changesDuringLoad.add(change);
+        }
+    }
+
+    private static void putFaculty(TrigramIndex index, FacultySnapshot faculty) {
+        index.put(Kind.FACULTY_NAME.key(faculty.id()), faculty.name());
+        index.put(Kind.FACULTY_COLOR.key(faculty.id()), faculty.color());
+    }
+
+    public List<SearchHit> search(String query, int limit) {
+        logger.info("Was invoked method search");
+        if (query == null || query.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Query must not be empty");
+        }
+        List<SearchHit> hits = index.search(query, Math.min(limit, MAX_LIMIT), MIN_COVERAGE).stream()
+                .map(match -> new SearchHit(Kind.ofKey(match.key()), Kind.idOfKey(match.key()), match.text(), match.score()))
+                .toList();
+        logger.debug("Found {} search hits for '{}'", hits.size(), query);
+        return hits;
+    }
+}
@@ -0,0 +1,201 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.hogwarts.school.config.PrimaryRead;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.event.StudentSnapshot;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Индекс "возраст -> отсортированный массив id студентов". Возраст - маленький ограниченный домен,
+ * поэтому корзины лежат в массиве по индексу возраста, а id хранятся в примитивных long[].
+ * Пока индекс не загружен или в базе есть возраст вне [0, {@value #MAX_AGE}], {@link #isReady()} возвращает false
+ * и запросы должны идти в базу.
+ * Загрузка идет, пока сервис уже обслуживает запросы: снимок, во время чтения которого пришло событие,
+ * отбрасывается и читается заново, как при сверке {@link StudentStatistics}.
+ */
+@Component
+public class StudentAgeIndex {
+    private static final Logger logger = LoggerFactory.getLogger(StudentAgeIndex.class);
+
+    public static final int MAX_AGE = 150;
+    private static final int MAX_LOAD_ATTEMPTS = 3;
+
+    private final StudentRepository studentRepository;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private long[][] buckets = new long[MAX_AGE + 1][0];
+    private int[] sizes = new int[MAX_AGE + 1];
+    private boolean loaded;
+    private int outOfRange;
+    private long generation; // число примененных событий, чтобы загрузка не затерла изменения, пришедшие во время чтения
+
+    public StudentAgeIndex(StudentRepository studentRepository) {
+        this.studentRepository = studentRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @PrimaryRead
+    public void load() {
+        for (int attempt = 1; attempt <= MAX_LOAD_ATTEMPTS; attempt++) {
+            if (tryLoad()) {
+                return;
+            }
+            logger.debug("Students changed while loading age index, attempt {}", attempt);
+        }
+        logger.warn("Student age index was not loaded: students kept changing during {} attempts", MAX_LOAD_ATTEMPTS);
+    }
+
+    private boolean tryLoad() {
+        long startGeneration;
+        lock.readLock().lock();
+        try {
+            startGeneration = generation;
+        } finally {
+            lock.readLock().unlock();
+        }
+        long[][] newBuckets = new long[MAX_AGE + 1][0];
+        int[] newSizes = new int[MAX_AGE + 1];
+        int newOutOfRange = 0;
+        try (Stream<Object[]> students = studentRepository.streamIdAndAge()) {
+            for (Object[] row : (Iterable<Object[]>) students::iterator) {
+                int age = ((Number) row[1]).intValue();
+                if (age < 0 || age > MAX_AGE) {
+                    newOutOfRange++;
+                    continue;
+                }
+                if (newSizes[age] == newBuckets[age].length) {
+                    newBuckets[age] = Arrays.copyOf(newBuckets[age], Math.max(16, newSizes[age] * 2));
+                }
+                newBuckets[age][newSizes[age]++] = (Long) row[0];
+            }
+        }
+        for (int age = 0; age <= MAX_AGE; age++) {
+            Arrays.sort(newBuckets[age], 0, newSizes[age]);
+        }
+        lock.writeLock().lock();
+        try {
+            if (generation != startGeneration) {
+                return false;
+            }
+            buckets = newBuckets;
+            sizes = newSizes;
+            outOfRange = newOutOfRange;
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.debug("Student age index loaded, students out of range: {}", newOutOfRange);
+        return true;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStudentChanged(StudentChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            generation++;
+            if (event.before() != null) {
+                remove(event.before());
+            }
+            if (event.after() != null) {
+                insert(event.after());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        lock.readLock().lock();
+        try {
+            return loaded && outOfRange == 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long count(int minAge, int maxAge) {
+        lock.readLock().lock();
+        try {
+            long count = 0;
+            for (int age = Math.max(minAge, 0); age <= Math.min(maxAge, MAX_AGE); age++) {
+                count += sizes[age];
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает до {@code limit} id студентов с возрастом из [minAge, maxAge] в порядке (возраст, id),
+     * начиная строго после пары (afterAge, afterId).
+     */
+    public long[] ids(int minAge, int maxAge, int afterAge, long afterId, int limit) {
+        lock.readLock().lock();
+        try {
+            long[] page = new long[(int) Math.min(limit, count(minAge, maxAge))];
+            int size = 0;
+            for (int age = Math.max(Math.max(minAge, afterAge), 0); age <= Math.min(maxAge, MAX_AGE) && size < page.length; age++) {
+                int from = 0;
+                if (age == afterAge) {
+                    int position = Arrays.binarySearch(buckets[age], 0, sizes[age], afterId);
+                    from = position >= 0 ? position + 1 : -position - 1;
+                }
+                int length = Math.min(sizes[age] - from, page.length - size);
+                if (length > 0) {
+                    System.arraycopy(buckets[age], from, page, size, length);
+                    size += length;
+                }
+            }
+            return size == page.length ? page : Arrays.copyOf(page, size);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void insert(StudentSnapshot student) {
+        int age = student.age();
+        if (age < 0 || age > MAX_AGE) {
+            outOfRange++;
+            return;
+        }
+        int position = Arrays.binarySearch(buckets[age], 0, sizes[age], student.id());
+        if (position >= 0) {
+            return;
+        }
+        position = -position - 1;
+        ensureCapacity(age);
+        System.arraycopy(buckets[age], position, buckets[age], position + 1, sizes[age] - position);
+        buckets[age][position] = student.id();
+        sizes[age]++;
+    }
+
+    private void remove(StudentSnapshot student) {
+        int age = student.age();
+        if (age < 0 || age > MAX_AGE) {
+            outOfRange--;
+            return;
+        }
+        int position = Arrays.binarySearch(buckets[age], 0, sizes[age], student.id());
+        if (position < 0) {
+            return;
+        }
+        System.arraycopy(buckets[age], position + 1, buckets[age], position, sizes[age] - position - 1);
+        sizes[age]--;
+    }
+
+    private void ensureCapacity(int age) {
+        if (sizes[age] == buckets[age].length) {
+            buckets[age] = Arrays.copyOf(buckets[age], Math.max(16, sizes[age] * 2));
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package ru.hogwarts.school.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+import ru.hogwarts.school.config.DatabaseTaskExecutor;
+import ru.hogwarts.school.model.StudentReport;
+import ru.hogwarts.school.model.StudentView;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+/**
+ * Параллельные отчеты по всей таблице студентов. Диапазон id делится пополам, пока куски не станут
+ * меньше {@code students.report.chunk-size}; каждый кусок читается отдельным read-only запросом
+ * под разрешением {@link DatabaseTaskExecutor} и сворачивается {@link Collector}'ом, результаты кусков сливаются
+ * его combiner'ом. Разрешения общие с остальными фоновыми задачами, поэтому отчет не выбирает пул соединений целиком.
+ * Пул потоков на каждый параллелизм создается один раз и переиспользуется; простаивающие потоки ForkJoinPool завершает сам.
+ */
+@Component
+public class StudentReportEngine {
+    private static final Logger logger = LoggerFactory.getLogger(StudentReportEngine.class);
+
+    private static final int CHUNKS_PER_THREAD = 4; // запас кусков на поток, чтобы медленный кусок не держал остальных
+
+    private final StudentRepository studentRepository;
+    private final DatabaseTaskExecutor databaseTaskExecutor;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Map<String, Collector<StudentView, ?, ?>> reports = new LinkedHashMap<>();
+    private final int defaultParallelism;
+    private final int maxParallelism;
+    private final int chunkSize;
+    private final Map<Integer, ForkJoinPool> pools = new ConcurrentHashMap<>(); // параллелизм -> пул, не больше maxParallelism пулов
+
+    public StudentReportEngine(StudentRepository studentRepository, DatabaseTaskExecutor databaseTaskExecutor,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${students.report.parallelism:0}") int parallelism,
+                               @Value("${school.executor.database-permits:${spring.datasource.hikari.maximum-pool-size:10}}") int maxParallelism,
+                               @Value("${students.report.chunk-size:10000}") int chunkSize) {
+        this.studentRepository = studentRepository;
+        this.databaseTaskExecutor = databaseTaskExecutor;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.maxParallelism = maxParallelism;
+        this.defaultParallelism = Math.min(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors(), maxParallelism);
+        this.chunkSize = chunkSize;
+
+        register("count", Collectors.counting());
+        register("age-histogram", Collectors.groupingBy(StudentView::age, TreeMap::new, Collectors.counting()));
+        register("faculty-histogram", Collectors.groupingBy(student -> String.valueOf(student.facultyId()), TreeMap::new, Collectors.counting()));
+    }
+
+    /**
+     * Регистрирует отчет: {@code reducer} должен быть ассоциативным, куски сливаются в порядке id.
+     */
+    public void register(String type, Collector<StudentView, ?, ?> reducer) {
+        reports.put(type, reducer);
+    }
+
+    public StudentReport run(String type, Integer parallelism) {
+        Collector<StudentView, ?, ?> reducer = reports.get(type);
+        if (reducer == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown report type: " + type + ", expected one of " + reports.keySet());
+        }
+        if (parallelism != null && parallelism < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Parallelism must be positive");
+        }
+        int threads = parallelism == null ? defaultParallelism : Math.min(parallelism, maxParallelism);
+        long started = System.nanoTime();
+        AtomicLong rows = new AtomicLong();
+        Object result = run(reducer, pools.computeIfAbsent(threads, StudentReportEngine::newPool), rows);
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+        logger.debug("Report {} over {} rows with parallelism {} took {} ms", type, rows.get(), threads, elapsedMillis);
+        return new StudentReport(type, threads, rows.get(), elapsedMillis, result);
+    }
+
+    private <A, R> R run(Collector<StudentView, A, R> reducer, ForkJoinPool pool, AtomicLong rows) {
+        List<Object[]> bounds = studentRepository.findIdBounds();
+        Object[] bound = bounds.isEmpty() ? null : bounds.get(0);
+        if (bound == null || bound[0] == null) {
+            return reducer.finisher().apply(reducer.supplier().get());
+        }
+        long minId = ((Number) bound[0]).longValue();
+        long maxId = ((Number) bound[1]).longValue();
+        long span = maxId - minId + 1;
+        long leafSize = Math.max(Math.min(chunkSize, span / ((long) pool.getParallelism() * CHUNKS_PER_THREAD)), 1);
+        A accumulated = pool.invoke(new RangeTask<>(reducer, minId, maxId, leafSize, rows));
+        return reducer.finisher().apply(accumulated);
+    }
+
+    private final class RangeTask<A> extends RecursiveTask<A> {
+        private final Collector<StudentView, A, ?> reducer;
+        private final long fromId;
+        private final long toId;
+        private final long leafSize;
+        private final AtomicLong rows;
+
+        RangeTask(Collector<StudentView, A, ?> reducer, long fromId, long toId, long leafSize, AtomicLong rows) {
+            this.reducer = reducer;
+            this.fromId = fromId;
+            this.toId = toId;
+            this.leafSize = leafSize;
+            this.rows = rows;
+        }
+
+        @Override
+        protected A compute() {
+            if (toId - fromId + 1 <= leafSize) {
+                List<StudentView> students = databaseTaskExecutor.callWithPermit(() ->
+                        readOnlyTransaction.execute(status -> studentRepository.findViewsByIdBetween(fromId, toId)));
+                A accumulator = reducer.supplier().get();
+                students.forEach(student -> reducer.accumulator().accept(accumulator, student));
+                rows.addAndGet(students.size());
+                return accumulator;
+            }
+            long middle = fromId + (toId - fromId) / 2;
+            RangeTask<A> left = new RangeTask<>(reducer, fromId, middle, leafSize, rows);
+            RangeTask<A> right = new RangeTask<>(reducer, middle + 1, toId, leafSize, rows);
+            right.fork();
+            A leftResult = left.compute();
+            return reducer.combiner().apply(leftResult, right.join());
+        }
+    }
+
+    private static ForkJoinPool newPool(int parallelism) {
+        return new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("student-report-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pools.values().forEach(ForkJoinPool::shutdown);
+    }
+}
@@ -1,26 +1,81 @@
 package ru.hogwarts.school.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
+import ru.hogwarts.school.config.DatabaseTaskExecutor;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.event.StudentSnapshot;
 import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.KeysetPage;
 import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.model.StudentBatch;
+import ru.hogwarts.school.model.StudentAggregates;
+import ru.hogwarts.school.model.StudentReport;
+import ru.hogwarts.school.model.StudentView;
+import ru.hogwarts.school.model.VersionTag;
 import ru.hogwarts.school.repository.FacultyRepository;
 import ru.hogwarts.school.repository.StudentRepository;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class StudentService {
+    private static final int IN_CLAUSE_CHUNK_SIZE = 1000;
+    private static final int MAX_BATCH_LOOKUP_SIZE = 10_000;
+
     private final StudentRepository studentRepository;
     private final FacultyRepository facultyRepository;
+    private final StudentStatistics studentStatistics;
+    private final StudentAgeIndex studentAgeIndex;
+    private final DatabaseTaskExecutor databaseTaskExecutor;
+    private final StudentReportEngine studentReportEngine;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
 
-    public StudentService(StudentRepository studentRepository, FacultyRepository facultyRepository) {
+    /**
+     * @param batchSize размер JDBC-пачки Hibernate; 0 - пакетная запись выключена, контекст тогда не очищается по ходу вставки
+     */
+    public StudentService(StudentRepository studentRepository, FacultyRepository facultyRepository,
+                          StudentStatistics studentStatistics, StudentAgeIndex studentAgeIndex,
+                          DatabaseTaskExecutor databaseTaskExecutor, StudentReportEngine studentReportEngine,
+                          ApplicationEventPublisher eventPublisher, EntityManager entityManager, ObjectMapper objectMapper,
+                          @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:0}") int batchSize) {
         this.studentRepository = studentRepository;
         this.facultyRepository = facultyRepository;
+        this.studentStatistics = studentStatistics;
+        this.studentAgeIndex = studentAgeIndex;
+        this.databaseTaskExecutor = databaseTaskExecutor;
+        this.studentReportEngine = studentReportEngine;
+        this.eventPublisher = eventPublisher;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
     }
 
     private static final Logger logger = LoggerFactory.getLogger(StudentService.class);
@@ -28,83 +83,338 @@ public class StudentService {
     public Student createStudent(Student student) {
         logger.info("Was invoked method for create student");
         logger.debug("Creating student with data: {}", student);
-        if (student.getFaculty() != null && student.getFaculty().getId() != null) {
-            Faculty faculty = facultyRepository.findById(student.getFaculty().getId())
-                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Faculty not found with id " + student.getFaculty().getId()));
-            student.setFaculty(faculty);
-        } else {
-            student.setFaculty(null);
-        }
+        Student savedStudent = saveStudent(student);
+        eventPublisher.publishEvent(StudentChangedEvent.created(StudentSnapshot.of(savedStudent)));
+        return savedStudent;
+    }
+
+    private Student saveStudent(Student student) {
+        student.setId(null);
+        student.setFaculty(resolveFaculty(student));
         return studentRepository.save(student);
     }
 
+    private Faculty resolveFaculty(Student student) {
+        Long facultyId = facultyIdOf(student);
+        if (facultyId == null) {
+            return null;
+        }
+        return facultyRepository.findById(facultyId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Faculty not found with id " + facultyId));
+    }
+
+    @Transactional
+    public Collection<Student> createStudents(Collection<Student> students) {
+        logger.info("Was invoked method for create students batch");
+        logger.debug("Creating {} students", students.size());
+        Map<Long, Faculty> faculties = findFacultiesOf(students);
+        List<Student> created = new ArrayList<>(students.size());
+        for (Student student : students) {
+            student.setId(null);
+            student.setFaculty(faculties.get(facultyIdOf(student)));
+            entityManager.persist(student);
+            eventPublisher.publishEvent(StudentChangedEvent.created(StudentSnapshot.of(student)));
+            created.add(student);
+            if (batchSize > 0 && created.size() % batchSize == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        return created;
+    }
+
+    @Transactional
+    public Collection<Student> editStudents(Collection<Student> students) {
+        logger.info("Was invoked method for edit students batch");
+        logger.debug("Editing {} students", students.size());
+        if (students.stream().anyMatch(student -> student.getId() == null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Student id is required");
+        }
+        Map<Long, Faculty> faculties = findFacultiesOf(students);
+        List<Long> ids = students.stream().map(Student::getId).distinct().toList();
+        Map<Long, Student> existing = new HashMap<>(ids.size());
+        for (int from = 0; from < ids.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            studentRepository.findAllById(ids.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, ids.size())))
+                    .forEach(student -> existing.put(student.getId(), student));
+        }
+        List<Student> edited = new ArrayList<>(students.size());
+        for (Student student : students) {
+            Student found = existing.get(student.getId());
+            if (found == null) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Student not found with id " + student.getId());
+            }
+            StudentSnapshot before = StudentSnapshot.of(found);
+            found.setName(student.getName());
+            found.setAge(student.getAge());
+            found.setFaculty(faculties.get(facultyIdOf(student)));
+            eventPublisher.publishEvent(new StudentChangedEvent(before, StudentSnapshot.of(found)));
+            edited.add(found);
+        }
+        flushVersioned(null); // версий в пачке нет, поэтому только 409 вместо 500 на коммите
+        return edited;
+    }
+
+    private Map<Long, Faculty> findFacultiesOf(Collection<Student> students) { // один запрос на все факультеты пачки
+        List<Long> facultyIds = students.stream()
+                .map(this::facultyIdOf)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        Map<Long, Faculty> faculties = facultyRepository.findAllById(facultyIds).stream()
+                .collect(Collectors.toMap(Faculty::getId, Function.identity()));
+        facultyIds.stream()
+                .filter(id -> !faculties.containsKey(id))
+                .findFirst()
+                .ifPresent(id -> {
+                    throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Faculty not found with id " + id);
+                });
+        return faculties;
+    }
+
+    private Long facultyIdOf(Student student) {
+        return student.getFaculty() == null ? null : student.getFaculty().getId();
+    }
+
+    @Transactional(readOnly = true)
     public Student findStudent(long id) {
         logger.info("Was invoked method for find student");
         logger.debug("Looking for student with id: {}", id);
         return studentRepository.findById(id).orElse(null);
     }
 
+    @Transactional(readOnly = true)
+    public StudentBatch findStudents(List<Long> ids) {
+        logger.info("Was invoked method findStudents");
+        if (ids.size() > MAX_BATCH_LOOKUP_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + MAX_BATCH_LOOKUP_SIZE + " ids per request");
+        }
+        if (ids.contains(null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Student id must not be null");
+        }
+        List<Long> distinctIds = List.copyOf(new LinkedHashSet<>(ids));
+        logger.debug("Looking for {} students by id", distinctIds.size());
+        Map<Long, StudentView> found = findViewsById(distinctIds);
+        List<StudentView> students = new ArrayList<>(found.size());
+        List<Long> missing = new ArrayList<>();
+        for (Long id : distinctIds) { // порядок запроса, повторы id отдаются один раз
+            StudentView student = found.get(id);
+            if (student != null) {
+                students.add(student);
+            } else {
+                missing.add(id);
+            }
+        }
+        logger.debug("Found {} students, {} ids missing", students.size(), missing.size());
+        return new StudentBatch(students, missing);
+    }
+
+    @Transactional
     public Student editStudent(Student student) {
+        return editStudent(student, null);
+    }
+
+    /**
+     * Изменяет студента, если его версия равна {@code expectedVersion} ({@code null} - без проверки).
+     * Возвращает {@code null}, если студента нет.
+     */
+    @Transactional
+    public Student editStudent(Student student, Long expectedVersion) {
         logger.info("Was invoked method for edit student");
-        logger.debug("Editing student with data: {}", student);
-        return createStudent(student);
+        logger.debug("Editing student with data: {}, expected version: {}", student, expectedVersion);
+        Student found = student.getId() == null ? null : studentRepository.findById(student.getId()).orElse(null);
+        if (found == null) {
+            return null;
+        }
+        VersionTag.checkVersion(found.getVersion(), expectedVersion);
+        StudentSnapshot before = StudentSnapshot.of(found);
+        found.setName(student.getName());
+        found.setAge(student.getAge());
+        found.setFaculty(resolveFaculty(student));
+        flushVersioned(expectedVersion);
+        eventPublisher.publishEvent(new StudentChangedEvent(before, StudentSnapshot.of(found)));
+        return found;
+    }
+
+    private void flushVersioned(Long expectedVersion) { // конкурентное изменение между чтением и update ловится здесь, а не 500 на коммите
+        try {
+            studentRepository.flush();
+        } catch (OptimisticLockingFailureException e) {
+            throw new ResponseStatusException(expectedVersion == null ? HttpStatus.CONFLICT : HttpStatus.PRECONDITION_FAILED,
+                    "Student was modified concurrently");
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public Long findStudentVersion(long id) {
+        logger.info("Was invoked method findStudentVersion");
+        logger.debug("Looking for version of student with id: {}", id);
+        return studentRepository.findVersionById(id).orElse(null);
     }
 
+    @Transactional
     public void deleteStudent(long id) {
         logger.info("Was invoked method for delete student");
         logger.debug("Deleting student with id: {}", id);
-        studentRepository.deleteById(id);
+        studentRepository.findById(id).ifPresent(student -> {
+            StudentSnapshot before = StudentSnapshot.of(student);
+            studentRepository.delete(student);
+            eventPublisher.publishEvent(StudentChangedEvent.deleted(before));
+        });
     }
 
-    public Collection<Student> getAllStudents() {
+    @Transactional(readOnly = true)
+    public Collection<StudentView> getAllStudents() {
         logger.info("Was invoked method getAllStudents");
-        Collection<Student> students = studentRepository.findAll();
+        Collection<StudentView> students = studentRepository.findAllViews();
         logger.debug("Retrieved {} students", students.size());
         return students;
     }
 
-    public Collection<Student> findByAge(int age) {
+    @Transactional(readOnly = true)
+    public KeysetPage<StudentView> getStudentsPage(String next, int limit) {
+        logger.info("Was invoked method getStudentsPage");
+        int pageSize = KeysetPage.checkLimit(limit);
+        long afterId = KeysetPage.decodeIdCursor(next);
+        logger.debug("Getting {} students after id = {}", pageSize, afterId);
+        return KeysetPage.of(studentRepository.findViewsAfter(afterId, Limit.of(pageSize + 1)),
+                pageSize, StudentView::id);
+    }
+
+    @Transactional(readOnly = true)
+    public void exportStudents(OutputStream outputStream) throws IOException { // выгрузка в NDJSON без накопления в памяти
+        logger.info("Was invoked method exportStudents");
+        long count = 0;
+        try (Stream<Student> students = studentRepository.streamAllWithFaculty();
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            Iterator<Student> iterator = students.iterator();
+            while (iterator.hasNext()) {
+                writeExportRow(generator, iterator.next());
+                if (++count % StudentRepository.EXPORT_FETCH_SIZE == 0) {
+                    generator.flush();
+                    entityManager.clear();
+                }
+            }
+        }
+        logger.debug("Exported {} students", count);
+    }
+
+    private void writeExportRow(JsonGenerator generator, Student student) throws IOException {
+        Faculty faculty = student.getFaculty();
+        generator.writeStartObject();
+        generator.writeNumberField("id", student.getId());
+        generator.writeStringField("name", student.getName());
+        generator.writeNumberField("age", student.getAge());
+        if (faculty != null) {
+            generator.writeNumberField("facultyId", faculty.getId());
+            generator.writeStringField("facultyName", faculty.getName());
+            generator.writeStringField("facultyColor", faculty.getColor());
+        }
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    @Transactional(readOnly = true)
+    public Collection<StudentView> findByAge(int age) {
         logger.info("Was invoked method for find students by age");
         logger.debug("Finding students by age = {}", age);
-        Collection<Student> students = studentRepository.findByAge(age).stream()
-                .filter(s -> s.getAge() == age)
-                .collect(Collectors.toList());
+        Collection<StudentView> students = studentAgeIndex.isReady()
+                ? findAllInOrder(studentAgeIndex.ids(age, age, age, Long.MIN_VALUE, Integer.MAX_VALUE))
+                : studentRepository.findViewsByAgeBetween(age, age);
         logger.debug("Found {} students with age {}", students.size(), age);
         return students;
     }
 
-    public Collection<Student> findByAgeBetween(int ageMax, int ageMin) {
+    @Transactional(readOnly = true)
+    public Collection<StudentView> findByAgeBetween(int ageMin, int ageMax) {
         logger.info("Was invoked method findByAgeBetween");
         logger.debug("Finding students with age between {} and {}", ageMin, ageMax);
-        Collection<Student> students = studentRepository.findByAgeBetween(ageMin, ageMax);
+        Collection<StudentView> students = studentAgeIndex.isReady()
+                ? findAllInOrder(studentAgeIndex.ids(ageMin, ageMax, ageMin, Long.MIN_VALUE, Integer.MAX_VALUE))
+                : studentRepository.findViewsByAgeBetween(ageMin, ageMax);
         logger.debug("Found {} students in age range", students.size());
         return students;
     }
 
+    @Transactional(readOnly = true)
+    public KeysetPage<StudentView> findByAgeBetweenPage(int ageMin, int ageMax, String next, int limit) {
+        logger.info("Was invoked method findByAgeBetweenPage");
+        int pageSize = KeysetPage.checkLimit(limit);
+        int afterAge = ageMin;
+        long afterId = Long.MIN_VALUE;
+        if (next != null && !next.isEmpty()) { // курсор - пара "возраст:id" последнего студента страницы
+            String[] cursor = KeysetPage.decodeCursor(next).split(":");
+            try {
+                afterAge = Integer.parseInt(cursor[0]);
+                afterId = Long.parseLong(cursor[1]);
+            } catch (RuntimeException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+            }
+        }
+        logger.debug("Getting {} students with age between {} and {} after {}:{}", pageSize, ageMin, ageMax, afterAge, afterId);
+        List<StudentView> students = studentAgeIndex.isReady()
+                ? findAllInOrder(studentAgeIndex.ids(ageMin, ageMax, afterAge, afterId, pageSize + 1))
+                : studentRepository.findViewsByAgePage(ageMin, ageMax, afterAge, afterId, Limit.of(pageSize + 1));
+        return KeysetPage.of(students, pageSize, student -> student.age() + ":" + student.id());
+    }
+
+    @Transactional(readOnly = true)
+    public long countByAgeBetween(int ageMin, int ageMax) {
+        logger.info("Was invoked method countByAgeBetween");
+        return studentAgeIndex.isReady()
+                ? studentAgeIndex.count(ageMin, ageMax)
+                : studentRepository.countByAgeBetween(ageMin, ageMax);
+    }
+
+    private List<StudentView> findAllInOrder(long[] ids) { // проекции только для запрошенных id, в порядке id из индекса
+        Map<Long, StudentView> found = findViewsById(Arrays.stream(ids).boxed().toList());
+        List<StudentView> students = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            StudentView student = found.get(id);
+            if (student != null) {
+                students.add(student);
+            }
+        }
+        return students;
+    }
+
+    private Map<Long, StudentView> findViewsById(List<Long> ids) {
+        Map<Long, StudentView> found = new HashMap<>(ids.size());
+        for (int from = 0; from < ids.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            studentRepository.findViewsByIdIn(ids.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, ids.size())))
+                    .forEach(student -> found.put(student.id(), student));
+        }
+        return found;
+    }
+
+    @Transactional(readOnly = true)
     public Faculty getFacultyByStudentId(Long studentId) {
         logger.info("Was invoked method for get faculty by student id");
-        return studentRepository.findById(studentId)
+        // студент и факультет читаются одним запросом с join, без lazy-прокси
+        return studentRepository.findWithFacultyById(studentId)
                 .map(Student::getFaculty)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Student not found"));
     }
 
     public Integer countOfAllStudents() {
         logger.info("Was invoked method countOfAllStudents");
-        Integer count = studentRepository.countOfAllStudents();
+        Integer count = Math.toIntExact(studentStatistics.count());
         logger.debug("Total number of students: {}", count);
         return count;
     }
 
     public Double averageAgeOfAllStudents() {
         logger.info("Was invoked method averageAgeOfAllStudents");
-        Double average = studentRepository.averageAgeOfAllStudents();
+        Double average = studentStatistics.averageAge();
         logger.debug("Average age of all students: {}", average);
         return average;
     }
 
-    public Collection<Student> getLastFiveStudents() {
+    @Transactional(readOnly = true)
+    public Collection<StudentView> getLastFiveStudents() {
         logger.info("Was invoked method getLastFiveStudents");
-        Collection<Student> students = studentRepository.getLastFiveStudents();
+        Collection<StudentView> students = studentRepository.findLastViews(Limit.of(5));
         logger.debug("Retrieved last five students, count: {}", students.size());
         return students;
     }
@@ -113,39 +423,70 @@ public class StudentService {
         logger.info("Was invoked method getAllStudentsWithParallelThreads");
         for (int i = 1; i <= 6; i = i + 2) {
             final int index = i;
-            new Thread(() -> {
-                System.out.println((studentRepository.findAll().get(index)));
-                System.out.println((studentRepository.findAll().get(index + 1)));
-            }).start();
+            // каждая задача читает только свою пару студентов одним запросом
+            databaseTaskExecutor.submit(() -> studentRepository.findViewsSlice(index, 2))
+                    .thenAccept(students -> students.forEach(System.out::println))
+                    .exceptionally(e -> logPrintFailure(index, e));
         }
     }
-  
+
     public synchronized void getAllStudentsWithParallelThreadsSynchronized() {
         logger.info("Was invoked method getAllStudentsWithParallelThreadsSynchronized");
         Object printLock = new Object();
         for (int i = 1; i <= 6; i = i + 2) {
             final int index = i;
-            new Thread(() -> {
-                synchronized (printLock) {
-                    System.out.println((studentRepository.findAll().get(index)));
-                    System.out.println((studentRepository.findAll().get(index + 1)));
-                }
-            }).start();
+            // запрос вне блокировки: под synchronized виртуальный поток занимал бы поток-носитель на время запроса
+            databaseTaskExecutor.submit(() -> studentRepository.findViewsSlice(index, 2))
+                    .thenAccept(students -> {
+                        synchronized (printLock) {
+                            students.forEach(System.out::println);
+                        }
+                    })
+                    .exceptionally(e -> logPrintFailure(index, e));
         }
     }
 
-    public Collection<Student> getStudentsWhoseNameStartsWithA() {
+    private Void logPrintFailure(int index, Throwable e) {
+        logger.error("Failed to print students from position {}", index, e);
+        return null;
+    }
+
+    @Transactional(readOnly = true)
+    public Collection<StudentView> getStudentsWhoseNameStartsWithA() {
         logger.info("Was invoked method getStudentsWhoseNameStartsWithA");
-        Collection<Student> students = studentRepository.findAll().stream().filter(s -> s.getName().startsWith("А")).toList();
+        Collection<StudentView> students = studentRepository.findViewsByNamePrefix("А");
         logger.debug("Students, whose name starts with the letter A count: {}", students.size());
         return students;
     }
 
+    @Transactional(readOnly = true)
+    public KeysetPage<StudentView> searchByNamePrefix(String prefix, String next, int limit) {
+        logger.info("Was invoked method searchByNamePrefix");
+        if (prefix == null || prefix.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Prefix must not be empty");
+        }
+        int pageSize = KeysetPage.checkLimit(limit);
+        long afterId = KeysetPage.decodeIdCursor(next);
+        logger.debug("Searching {} students with name prefix '{}' after id = {}", pageSize, prefix, afterId);
+        return KeysetPage.of(studentRepository.findViewsByNamePrefix(prefix, afterId, Limit.of(pageSize + 1)),
+                pageSize, StudentView::id);
+    }
+
     public Double getStudentsAverageAge() {
         logger.info("Was invoked method getStudentsAverageAge");
-        Double average = studentRepository.findAll().stream().mapToDouble(Student::getAge).average().orElse(0.0);
+        Double average = Objects.requireNonNullElse(studentStatistics.averageAge(), 0.0);
         logger.debug("All students average age: {}", average);
         return average;
     }
-}
 
+    public StudentAggregates getStudentAggregates() {
+        logger.info("Was invoked method getStudentAggregates");
+        return studentStatistics.aggregates();
+    }
+
+    public StudentReport buildReport(String type, Integer parallelism) {
+        logger.info("Was invoked method buildReport");
+        logger.debug("Building report {} with parallelism {}", type, parallelism);
+        return studentReportEngine.run(type, parallelism);
+    }
+}
@@ -0,0 +1,142 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.hogwarts.school.config.PrimaryRead;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.event.StudentSnapshot;
+import ru.hogwarts.school.model.StudentAggregates;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Агрегаты по студентам, которые поддерживаются в памяти: число студентов, сумма возрастов,
+ * гистограмма возрастов (для min/max) и число студентов по факультетам.
+ * Заполняются из базы при старте, обновляются событиями {@link StudentChangedEvent}
+ * и периодически сверяются с базой.
+ */
+@Component
+public class StudentStatistics {
+    private static final Logger logger = LoggerFactory.getLogger(StudentStatistics.class);
+    private static final int MAX_RECONCILE_ATTEMPTS = 3;
+
+    private final StudentRepository studentRepository;
+
+    private long count;
+    private long ageSum;
+    private TreeMap<Integer, Long> countByAge = new TreeMap<>();
+    private HashMap<Long, Long> countByFaculty = new HashMap<>();
+    private long countWithoutFaculty;
+    private long generation; // число примененных событий, чтобы сверка не затерла изменения, пришедшие во время запроса
+
+    public StudentStatistics(StudentRepository studentRepository) {
+        this.studentRepository = studentRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${students.statistics.reconcile-interval:PT10M}",
+            fixedDelayString = "${students.statistics.reconcile-interval:PT10M}")
+    @PrimaryRead
+    public void reconcile() {
+        for (int attempt = 1; attempt <= MAX_RECONCILE_ATTEMPTS; attempt++) {
+            if (tryReconcile()) {
+                return;
+            }
+            logger.debug("Students changed while reconciling statistics, attempt {}", attempt);
+        }
+        logger.warn("Student statistics were not reconciled: students kept changing during {} attempts", MAX_RECONCILE_ATTEMPTS);
+    }
+
+    /**
+     * Снимок берется одним запросом, то есть из одного состояния базы. Событие, примененное во время запроса,
+     * могло в этот снимок как попасть, так и не попасть, поэтому такой снимок отбрасывается.
+     */
+    private boolean tryReconcile() {
+        long startGeneration;
+        synchronized (this) {
+            startGeneration = generation;
+        }
+        TreeMap<Integer, Long> ages = new TreeMap<>();
+        HashMap<Long, Long> faculties = new HashMap<>();
+        long newCount = 0;
+        long newAgeSum = 0;
+        long withoutFaculty = 0;
+        for (Object[] row : studentRepository.countGroupedByAgeAndFaculty()) {
+            int age = ((Number) row[0]).intValue();
+            long students = ((Number) row[2]).longValue();
+            ages.merge(age, students, Long::sum);
+            newCount += students;
+            newAgeSum += age * students;
+            if (row[1] == null) {
+                withoutFaculty += students;
+            } else {
+                faculties.merge(((Number) row[1]).longValue(), students, Long::sum);
+            }
+        }
+        synchronized (this) {
+            if (generation != startGeneration) {
+                return false;
+            }
+            if (newCount != count || newAgeSum != ageSum) {
+                logger.warn("Student statistics drifted: count {} -> {}, age sum {} -> {}", count, newCount, ageSum, newAgeSum);
+            }
+            count = newCount;
+            ageSum = newAgeSum;
+            countByAge = ages;
+            countByFaculty = faculties;
+            countWithoutFaculty = withoutFaculty;
+        }
+        logger.debug("Student statistics reconciled, count: {}", newCount);
+        return true;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onStudentChanged(StudentChangedEvent event) {
+        generation++;
+        if (event.before() != null) {
+            apply(event.before(), -1);
+        }
+        if (event.after() != null) {
+            apply(event.after(), 1);
+        }
+    }
+
+    private void apply(StudentSnapshot student, int delta) {
+        count += delta;
+        ageSum += (long) student.age() * delta;
+        countByAge.merge(student.age(), (long) delta, StudentStatistics::sumOrRemove);
+        if (student.facultyId() == null) {
+            countWithoutFaculty += delta;
+        } else {
+            countByFaculty.merge(student.facultyId(), (long) delta, StudentStatistics::sumOrRemove);
+        }
+    }
+
+    private static Long sumOrRemove(Long current, Long delta) {
+        long sum = current + delta;
+        return sum == 0 ? null : sum;
+    }
+
+    public synchronized long count() {
+        return count;
+    }
+
+    public synchronized Double averageAge() {
+        return count == 0 ? null : (double) ageSum / count;
+    }
+
+    public synchronized StudentAggregates aggregates() {
+        return new StudentAggregates(count, averageAge(),
+                countByAge.isEmpty() ? null : countByAge.firstKey(),
+                countByAge.isEmpty() ? null : countByAge.lastKey(),
+                Map.copyOf(countByFaculty), countWithoutFaculty);
+    }
+}
@@ -0,0 +1,317 @@
+package ru.hogwarts.school.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Инвертированный индекс по триграммам (как в pg_trgm: каждое слово дополняется двумя пробелами слева и одним справа).
+ * Документы нумеруются подряд, списки вхождений хранятся в примитивных int-массивах.
+ * Удаленные документы помечаются в битовой маске и вычищаются перестроением, когда их становится больше половины.
+ * Совпадения считаются в общих для индекса массивах-счетчиках из ограниченного пула, а без свободного массива -
+ * слиянием отсортированных списков вхождений.
+ */
+public class TrigramIndex {
+    private static final int COMPACTION_THRESHOLD = 1024;
+    private static final int MAX_QUERY_GRAMS = 255; // счетчики совпадений - байтовые
+
+    public record Match(long key, String text, double score) {
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final BlockingQueue<byte[]> scratch;
+
+    private final Map<Long, IntList> postings = new HashMap<>();
+    private final Map<Long, Integer> ordinals = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+    private long[] docKeys = new long[COMPACTION_THRESHOLD];
+    private String[] docTexts = new String[COMPACTION_THRESHOLD];
+    private int[] docGramCounts = new int[COMPACTION_THRESHOLD];
+    private int docCount;
+    private int deletedCount;
+
+    public TrigramIndex() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param scratchBuffers сколько массивов счетчиков (по байту на документ) держать для поисков; поиск, которому
+     *                       массива не хватило (например, в тысяче виртуальных потоков), считает слиянием списков
+     */
+    public TrigramIndex(int scratchBuffers) {
+        this.scratch = new ArrayBlockingQueue<>(Math.max(scratchBuffers, 1));
+        for (int i = 0; i < scratchBuffers; i++) {
+            scratch.add(new byte[0]);
+        }
+    }
+
+    public void put(long key, String text) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(key);
+            addLocked(key, text);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long key) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает до {@code limit} документов, покрывающих не меньше {@code minCoverage} триграмм запроса,
+     * упорядоченных по сходству (доля общих триграмм от объединения, как similarity() в pg_trgm).
+     */
+    public List<Match> search(String query, int limit, double minCoverage) {
+        long[] queryGrams = trigrams(query);
+        if (queryGrams.length > MAX_QUERY_GRAMS) {
+            queryGrams = Arrays.copyOf(queryGrams, MAX_QUERY_GRAMS);
+        }
+        if (queryGrams.length == 0 || limit < 1) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            IntList[] lists = new IntList[queryGrams.length];
+            int listCount = 0;
+            for (long gram : queryGrams) {
+                IntList posting = postings.get(gram);
+                if (posting != null) {
+                    lists[listCount++] = posting;
+                }
+            }
+            TopMatches top = new TopMatches(limit, queryGrams.length, minCoverage);
+            byte[] counters = scratch.poll();
+            if (counters != null) {
+                try {
+                    if (counters.length < docCount) {
+                        counters = new byte[docKeys.length];
+                    }
+                    count(lists, listCount, counters, top);
+                } finally {
+                    scratch.offer(counters);
+                }
+            } else {
+                merge(lists, listCount, top);
+            }
+            return top.sorted();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Счетчики совпадений по номеру документа: один проход по спискам вхождений, затем по затронутым документам.
+     * Счетчики после прохода снова нулевые, поэтому массив переиспользуется следующими поисками.
+     */
+    private void count(IntList[] lists, int listCount, byte[] counters, TopMatches top) {
+        IntList touched = new IntList();
+        for (int l = 0; l < listCount; l++) {
+            IntList posting = lists[l];
+            for (int i = 0; i < posting.size; i++) {
+                int ordinal = posting.values[i];
+                if (counters[ordinal]++ == 0) {
+                    touched.add(ordinal);
+                }
+            }
+        }
+        for (int i = 0; i < touched.size; i++) {
+            int ordinal = touched.values[i];
+            top.offer(ordinal, counters[ordinal] & 0xFF);
+            counters[ordinal] = 0;
+        }
+    }
+
+    /**
+     * Без счетчиков: списки вхождений отсортированы по номеру документа, поэтому k-путевое слияние
+     * выдает каждый документ один раз вместе с числом списков, в которых он есть. Память - O(числа триграмм запроса).
+     */
+    private void merge(IntList[] lists, int listCount, TopMatches top) {
+        // триграмм в запросе немного: минимум ищется проходом по головам списков, без кучи
+        int[] positions = new int[listCount];
+        int[] heads = new int[listCount];
+        for (int i = 0; i < listCount; i++) {
+            heads[i] = lists[i].values[0];
+        }
+        while (true) {
+            int ordinal = Integer.MAX_VALUE;
+            for (int i = 0; i < listCount; i++) {
+                ordinal = Math.min(ordinal, heads[i]);
+            }
+            if (ordinal == Integer.MAX_VALUE) {
+                return;
+            }
+            int overlap = 0;
+            for (int i = 0; i < listCount; i++) {
+                if (heads[i] == ordinal) {
+                    overlap++;
+                    heads[i] = ++positions[i] < lists[i].size ? lists[i].values[positions[i]] : Integer.MAX_VALUE;
+                }
+            }
+            top.offer(ordinal, overlap);
+        }
+    }
+
+    /**
+     * Лучшие {@code limit} документов по сходству среди покрывающих не меньше {@code minCoverage} триграмм запроса.
+     */
+    private final class TopMatches {
+        // хуже - меньшее сходство, при равном - больший ключ: результат не зависит от порядка обхода
+        private static final Comparator<Match> WORST_FIRST = Comparator.comparingDouble(Match::score)
+                .thenComparing(Comparator.comparingLong(Match::key).reversed());
+
+        private final int limit;
+        private final int queryGrams;
+        private final double minOverlap;
+        private final PriorityQueue<Match> top;
+
+        TopMatches(int limit, int queryGrams, double minCoverage) {
+            this.limit = limit;
+            this.queryGrams = queryGrams;
+            this.minOverlap = minCoverage * queryGrams;
+            this.top = new PriorityQueue<>(limit + 1, WORST_FIRST);
+        }
+
+        void offer(int ordinal, int overlap) {
+            if (overlap < minOverlap || deleted.get(ordinal)) {
+                return;
+            }
+            double score = (double) overlap / (queryGrams + docGramCounts[ordinal] - overlap);
+            if (top.size() < limit || isBetter(score, docKeys[ordinal], top.peek())) {
+                top.add(new Match(docKeys[ordinal], docTexts[ordinal], score));
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+        }
+
+        private static boolean isBetter(double score, long key, Match worst) {
+            return score > worst.score() || score == worst.score() && key < worst.key();
+        }
+
+        List<Match> sorted() {
+            List<Match> matches = new ArrayList<>(top);
+            matches.sort(WORST_FIRST.reversed());
+            return matches;
+        }
+    }
+
+    private void addLocked(long key, String text) {
+        long[] grams = trigrams(text);
+        if (grams.length == 0) {
+            return;
+        }
+        if (docCount == docKeys.length) {
+            int capacity = docKeys.length * 2;
+            docKeys = Arrays.copyOf(docKeys, capacity);
+            docTexts = Arrays.copyOf(docTexts, capacity);
+            docGramCounts = Arrays.copyOf(docGramCounts, capacity);
+        }
+        int ordinal = docCount++;
+        docKeys[ordinal] = key;
+        docTexts[ordinal] = text;
+        docGramCounts[ordinal] = grams.length;
+        for (long gram : grams) {
+            postings.computeIfAbsent(gram, g -> new IntList()).add(ordinal);
+        }
+        ordinals.put(key, ordinal);
+    }
+
+    private void removeLocked(long key) {
+        Integer ordinal = ordinals.remove(key);
+        if (ordinal == null) {
+            return;
+        }
+        deleted.set(ordinal);
+        docTexts[ordinal] = null;
+        if (++deletedCount > COMPACTION_THRESHOLD && deletedCount > docCount / 2) {
+            compactLocked();
+        }
+    }
+
+    private void compactLocked() {
+        long[] keys = docKeys;
+        String[] texts = docTexts;
+        int count = docCount;
+        postings.clear();
+        ordinals.clear();
+        deleted.clear();
+        docKeys = new long[docKeys.length];
+        docTexts = new String[docTexts.length];
+        docGramCounts = new int[docGramCounts.length];
+        docCount = 0;
+        deletedCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (texts[i] != null) {
+                addLocked(keys[i], texts[i]);
+            }
+        }
+    }
+
+    static long[] trigrams(String text) {
+        if (text == null) {
+            return new long[0];
+        }
+        String normalized = text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+        long[] grams = new long[normalized.length() * 3];
+        int count = 0;
+        int wordStart = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean wordChar = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (wordChar && wordStart < 0) {
+                wordStart = i;
+            } else if (!wordChar && wordStart >= 0) {
+                String padded = "  " + normalized.substring(wordStart, i) + " ";
+                for (int j = 0; j + 3 <= padded.length(); j++) {
+                    grams[count++] = ((long) padded.charAt(j) << 32) | ((long) padded.charAt(j + 1) << 16) | padded.charAt(j + 2);
+                }
+                wordStart = -1;
+            }
+        }
+        Arrays.sort(grams, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || grams[unique - 1] != grams[i]) {
+                grams[unique++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, unique);
+    }
+
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+    }
+}
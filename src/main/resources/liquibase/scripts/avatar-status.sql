@@ -0,0 +1,5 @@
+--liquibase formatted sql
+
+--changeset byorck:10
+-- обложка строится после ответа на загрузку; у существующих аватаров она уже есть
+ALTER TABLE avatar ADD COLUMN status VARCHAR(16) NOT NULL DEFAULT 'READY';
@@ -0,0 +1,6 @@
+--liquibase formatted sql
+
+--changeset byorck:9
+-- версия строки для оптимистической блокировки и ETag; существующие строки получают версию 0
+ALTER TABLE student ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE faculty ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
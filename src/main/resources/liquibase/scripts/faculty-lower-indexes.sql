@@ -0,0 +1,6 @@
+--liquibase formatted sql
+
+--changeset byorck:8
+-- поиск по названию или цвету без учета регистра сравнивает lower(...), обычный индекс (name, color) для него не подходит
+CREATE INDEX faculty_lower_name_index ON faculty (lower(name));
+CREATE INDEX faculty_lower_color_index ON faculty (lower(color));
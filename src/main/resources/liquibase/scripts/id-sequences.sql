@@ -0,0 +1,16 @@
+--liquibase formatted sql
+
+--changeset byorck:3
+CREATE SEQUENCE IF NOT EXISTS student_seq INCREMENT BY 50;
+ALTER SEQUENCE student_seq INCREMENT BY 50;
+SELECT setval('student_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM student));
+
+--changeset byorck:4
+CREATE SEQUENCE IF NOT EXISTS faculty_seq INCREMENT BY 50;
+ALTER SEQUENCE faculty_seq INCREMENT BY 50;
+SELECT setval('faculty_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM faculty));
+
+--changeset byorck:5
+ALTER TABLE avatar ALTER COLUMN id DROP IDENTITY IF EXISTS;
+CREATE SEQUENCE IF NOT EXISTS avatar_seq INCREMENT BY 50;
+SELECT setval('avatar_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM avatar));
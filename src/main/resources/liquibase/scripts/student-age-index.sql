@@ -0,0 +1,5 @@
+--liquibase formatted sql
+
+--changeset byorck:7
+-- (age, id) обслуживает и поиск по диапазону возрастов, и keyset-страницы в порядке (age, id)
+CREATE INDEX student_age_index ON student (age, id);
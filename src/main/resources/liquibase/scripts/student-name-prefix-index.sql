@@ -0,0 +1,5 @@
+--liquibase formatted sql
+
+--changeset byorck:6
+-- student_name_index не используется для LIKE 'x%' при не-C сортировке базы
+CREATE INDEX student_name_pattern_index ON student (name text_pattern_ops);
@@ -0,0 +1,59 @@
+package ru.hogwarts.school.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DatabaseTaskExecutorTest {
+
+    @Test
+    void runsAtMostPermitsTasksAtOnce() throws Exception {
+        DatabaseTaskExecutor executor = new DatabaseTaskExecutor(new SimpleAsyncTaskExecutor(), 2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<CompletableFuture<Integer>> results = IntStream.range(0, 10)
+                .mapToObj(i -> executor.submit(() -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    started.countDown();
+                    release.await();
+                    running.decrementAndGet();
+                    return i;
+                }))
+                .toList();
+
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(executor.availablePermits()).isZero(); // остальные задачи ждут на семафоре, а не выполняются
+        assertThat(running.get()).isEqualTo(2);
+        release.countDown();
+
+        assertThat(results.stream().map(CompletableFuture::join)).containsExactlyElementsOf(IntStream.range(0, 10).boxed().toList());
+        assertThat(maxRunning.get()).isEqualTo(2);
+        assertThat(executor.availablePermits()).isEqualTo(2);
+    }
+
+    @Test
+    void failedTaskReleasesPermit() {
+        DatabaseTaskExecutor executor = new DatabaseTaskExecutor(new SimpleAsyncTaskExecutor(), 1);
+
+        CompletableFuture<Object> result = executor.submit(() -> {
+            throw new IllegalStateException("boom");
+        });
+
+        assertThatThrownBy(result::join).hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(executor.execute(() -> {
+        }).join()).isNull();
+        assertThat(executor.availablePermits()).isEqualTo(1);
+    }
+}
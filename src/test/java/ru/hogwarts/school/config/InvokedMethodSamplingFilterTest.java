@@ -0,0 +1,42 @@
+package ru.hogwarts.school.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.spi.FilterReply;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InvokedMethodSamplingFilterTest {
+    private final InvokedMethodSamplingFilter filter = new InvokedMethodSamplingFilter();
+    private final Logger logger = new LoggerContext().getLogger("ru.hogwarts.school.service.StudentService");
+
+    @BeforeEach
+    void setUp() {
+        filter.setRate(10);
+        filter.start();
+    }
+
+    @Test
+    void passesOneOfRateLinesPerCallSite() {
+        assertThat(IntStream.range(0, 25).filter(i -> decide(Level.INFO, "Was invoked method for find student") == FilterReply.NEUTRAL))
+                .containsExactly(0, 10, 20);
+        assertThat(decide(Level.INFO, "Was invoked method for edit student")).isEqualTo(FilterReply.NEUTRAL);
+    }
+
+    @Test
+    void ignoresOtherLines() {
+        for (int i = 0; i < 5; i++) {
+            assertThat(decide(Level.INFO, "Student age index loaded")).isEqualTo(FilterReply.NEUTRAL);
+            assertThat(decide(Level.WARN, "Was invoked method for find student")).isEqualTo(FilterReply.NEUTRAL);
+        }
+    }
+
+    private FilterReply decide(Level level, String format) {
+        return filter.decide(null, logger, level, format, null, null);
+    }
+}
@@ -0,0 +1,63 @@
+package ru.hogwarts.school.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.web.server.ResponseStatusException;
+import ru.hogwarts.school.model.FacultyView;
+import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.service.FacultyService;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MethodMetricsAspectTest {
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final FacultyRepository facultyRepository = mock(FacultyRepository.class);
+    private final FacultyService facultyService = proxy(new FacultyService(facultyRepository, mock(StudentRepository.class),
+            mock(CacheManager.class), mock(ApplicationEventPublisher.class)));
+
+    @Test
+    void recordsLatencyAndRowsOfServiceMethod() {
+        when(facultyRepository.findAllViews()).thenReturn(List.of(new FacultyView(1L, "Gryffindor", "red"),
+                new FacultyView(2L, "Slytherin", "green")));
+
+        facultyService.getAllFaculties();
+        facultyService.getAllFaculties();
+
+        assertThat(registry.get(MethodMetricsAspect.SERVICE_TIMER)
+                .tags("class", "FacultyService", "method", "getAllFaculties", "exception", "none")
+                .timer().count()).isEqualTo(2);
+        assertThat(registry.get(MethodMetricsAspect.ROWS_SUMMARY)
+                .tags("layer", "service", "method", "getAllFaculties")
+                .summary().totalAmount()).isEqualTo(4);
+    }
+
+    @Test
+    void tagsFailedCallsWithException() {
+        when(facultyRepository.findWithStudentsById(7L)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> facultyService.getFacultyRoster(7L)).isInstanceOf(ResponseStatusException.class);
+
+        assertThat(registry.get(MethodMetricsAspect.SERVICE_TIMER)
+                .tags("method", "getFacultyRoster", "exception", "ResponseStatusException")
+                .timer().count()).isEqualTo(1);
+        assertThat(registry.find(MethodMetricsAspect.ROWS_SUMMARY).tags("method", "getFacultyRoster").summary()).isNull();
+    }
+
+    private FacultyService proxy(FacultyService target) {
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new MethodMetricsAspect(registry));
+        return factory.getProxy();
+    }
+}
@@ -0,0 +1,110 @@
+package ru.hogwarts.school.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.TransactionManager;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadWriteRoutingDataSourceTest {
+
+    private final DataSource primary = database("rw_primary");
+    private final DataSource replica = database("rw_replica");
+
+    @BeforeEach
+    void setUp() {
+        new JdbcTemplate(primary).execute("create table node as select 'primary' as name");
+        new JdbcTemplate(replica).execute("create table node as select 'replica' as name");
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReadWriteRoutingDataSource.unpinPrimary();
+        new JdbcTemplate(primary).execute("drop table node");
+        new JdbcTemplate(replica).execute("drop table node");
+    }
+
+    @Test
+    void readOnlyTransactionsGoToReplica() {
+        DataSource dataSource = routing(replica);
+
+        assertThat(node(dataSource, true)).isEqualTo("replica");
+        assertThat(node(dataSource, false)).isEqualTo("primary");
+        assertThat(new JdbcTemplate(dataSource).queryForObject("select name from node", String.class)).isEqualTo("primary");
+    }
+
+    @Test
+    void pinnedThreadReadsFromPrimary() {
+        DataSource dataSource = routing(replica);
+
+        ReadWriteRoutingDataSource.pinPrimary();
+
+        assertThat(node(dataSource, true)).isEqualTo("primary");
+    }
+
+    @Test
+    void unavailableReplicaFallsBackToPrimary() {
+        DataSource dataSource = routing(new DriverManagerDataSource("jdbc:h2:mem:rw_missing;IFEXISTS=TRUE", "sa", ""));
+
+        assertThat(node(dataSource, true)).isEqualTo("primary");
+        assertThat(node(dataSource, true)).isEqualTo("primary");
+    }
+
+    @Test
+    void primaryReadGoesToPrimaryDespiteReadOnlyClass() {
+        DataSource dataSource = routing(replica);
+        ProxyFactory factory = new ProxyFactory(new Nodes(new JdbcTemplate(dataSource)));
+        factory.setProxyTargetClass(true);
+        factory.addAdvice(new TransactionInterceptor((TransactionManager) new DataSourceTransactionManager(dataSource),
+                new AnnotationTransactionAttributeSource()));
+        Nodes nodes = (Nodes) factory.getProxy();
+
+        assertThat(nodes.read()).isEqualTo("replica");
+        assertThat(nodes.primaryRead()).isEqualTo("primary");
+    }
+
+    @Transactional(readOnly = true)
+    static class Nodes {
+        private final JdbcTemplate jdbcTemplate;
+
+        Nodes(JdbcTemplate jdbcTemplate) {
+            this.jdbcTemplate = jdbcTemplate;
+        }
+
+        public String read() {
+            return jdbcTemplate.queryForObject("select name from node", String.class);
+        }
+
+        @PrimaryRead
+        public String primaryRead() {
+            return read();
+        }
+    }
+
+    private DataSource routing(DataSource replica) {
+        return new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(primary, replica, Duration.ofSeconds(30)));
+    }
+
+    private static String node(DataSource dataSource, boolean readOnly) {
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        transaction.setReadOnly(readOnly);
+        return transaction.execute(status -> new JdbcTemplate(dataSource).queryForObject("select name from node", String.class));
+    }
+
+    private static DataSource database(String name) {
+        return new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+    }
+}
@@ -0,0 +1,129 @@
+package ru.hogwarts.school.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.model.AvatarPreview;
+import ru.hogwarts.school.model.AvatarStatus;
+import ru.hogwarts.school.model.AvatarStatusView;
+import ru.hogwarts.school.service.AvatarService;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(AvatarController.class)
+class AvatarControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private AvatarService avatarService;
+
+    @TempDir
+    Path avatarsDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Path file = Files.writeString(avatarsDir.resolve("1.jpg"), "0123456789");
+        Avatar avatar = new Avatar();
+        avatar.setFilePath(file.toString());
+        avatar.setFileSize(10);
+        avatar.setMediaType("image/jpeg");
+        when(avatarService.findAvatar(1L)).thenReturn(avatar);
+    }
+
+    @Test
+    void uploadAvatar() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("avatar", "1.png", "image/png", new byte[]{1, 2, 3});
+        when(avatarService.uploadAvatar(eq(1L), any())).thenReturn(new AvatarStatusView(1L, AvatarStatus.PENDING));
+        when(avatarService.findAvatarStatus(1L)).thenReturn(new AvatarStatusView(1L, AvatarStatus.READY));
+
+        mockMvc.perform(MockMvcRequestBuilders.multipart("/avatar/1/avatar").file(file))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string(HttpHeaders.LOCATION, "/avatar/1/status"))
+                .andExpect(jsonPath("$.studentId").value(1L))
+                .andExpect(jsonPath("$.status").value("PENDING"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/avatar/1/status"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("READY"));
+    }
+
+    @Test
+    void downloadAvatarFromDb() throws Exception {
+        byte[] data = {1, 2, 3};
+        AvatarPreview preview = new AvatarPreview(data, "image/png");
+        when(avatarService.findAvatarPreview(1L)).thenReturn(preview);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/avatar/1/avatar-from-db"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"5289df737df57326fcdd22597afb1fac\""))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=60, public"))
+                .andExpect(content().contentType("image/png"))
+                .andExpect(content().bytes(data));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/avatar/1/avatar-from-db")
+                        .header(HttpHeaders.IF_NONE_MATCH, preview.eTag()))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, preview.eTag()))
+                .andExpect(content().bytes(new byte[0]));
+    }
+
+    @Test
+    void downloadAvatarFromFile() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/avatar/1/avatar-from-file"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 10))
+                .andExpect(content().contentType("image/jpeg"))
+                .andExpect(content().bytes("0123456789".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    void downloadAvatarFromFileIgnoresMalformedIfModifiedSince() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/avatar/1/avatar-from-file")
+                        .header(HttpHeaders.IF_MODIFIED_SINCE, "yesterday"))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes("0123456789".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    void downloadAvatarFromFileRange() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/avatar/1/avatar-from-file")
+                        .header(HttpHeaders.RANGE, "bytes=4-"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 4-9/10"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 6))
+                .andExpect(content().bytes("456789".getBytes(StandardCharsets.US_ASCII)));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/avatar/1/avatar-from-file")
+                        .header(HttpHeaders.RANGE, "bytes=10-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */10"));
+    }
+
+    @Test
+    void downloadAvatarFromFileRangeIgnoredWhenFileChanged() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/avatar/1/avatar-from-file")
+                        .header(HttpHeaders.RANGE, "bytes=4-")
+                        .header(HttpHeaders.IF_RANGE, "Thu, 01 Jan 1970 00:00:00 GMT"))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes("0123456789".getBytes(StandardCharsets.US_ASCII)));
+    }
+}
@@ -9,7 +9,11 @@ import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.FacultyRoster;
+import ru.hogwarts.school.model.FacultyView;
+import ru.hogwarts.school.model.KeysetPage;
 import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.model.StudentView;
 import ru.hogwarts.school.service.FacultyService;
 import ru.hogwarts.school.service.StudentService;
 
@@ -21,6 +25,7 @@ import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -79,6 +84,19 @@ class FacultyControllerTest {
                 .andExpect(jsonPath("$.color").value(faculty.getColor()));
     }
 
+    @Test
+    void getFacultyInfoNotModified() throws Exception {
+        when(facultyService.findFacultyVersion(42L)).thenReturn(5L);
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/faculty/{id}", 42L)
+                        .header("If-None-Match", "W/\"4\", \"5\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"5\""));
+
+        verify(facultyService, never()).findFaculty(anyLong());
+    }
+
     @Test
     void editFacultyInfo() throws Exception {
         final Long id = 43L;
@@ -94,7 +112,7 @@ class FacultyControllerTest {
         facultyObject.put("name", updatedName);
         facultyObject.put("color", updatedColor);
 
-        when(facultyService.editFaculty(any(Faculty.class))).thenReturn(updatedFaculty);
+        when(facultyService.editFaculty(any(Faculty.class), isNull())).thenReturn(updatedFaculty);
 
         mockMvc.perform(MockMvcRequestBuilders
                         .put("/faculty/{id}", id)
@@ -125,17 +143,10 @@ class FacultyControllerTest {
 
     @Test
     void getAllFaculties() throws Exception {
-        Faculty faculty1 = new Faculty();
-        faculty1.setId(42L);
-        faculty1.setName("faculty_name_test");
-        faculty1.setColor("faculty_test_color");
-
-        Faculty faculty2 = new Faculty();
-        faculty2.setId(43L);
-        faculty2.setName("faculty_name_test2");
-        faculty2.setColor("faculty_test_color2");
+        FacultyView faculty1 = new FacultyView(42L, "faculty_name_test", "faculty_test_color");
+        FacultyView faculty2 = new FacultyView(43L, "faculty_name_test2", "faculty_test_color2");
 
-        Collection<Faculty> faculties = Arrays.asList(faculty1, faculty2);
+        Collection<FacultyView> faculties = Arrays.asList(faculty1, faculty2);
 
         when(facultyService.getAllFaculties()).thenReturn(faculties);
 
@@ -143,9 +154,25 @@ class FacultyControllerTest {
                         .get("/faculty")
                         .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$[*].id", containsInAnyOrder(faculty1.getId().intValue(), faculty2.getId().intValue())))
-                .andExpect(jsonPath("$[*].name", containsInAnyOrder(faculty1.getName(), faculty2.getName())))
-                .andExpect(jsonPath("$[*].color", containsInAnyOrder(faculty1.getColor(), faculty2.getColor())));
+                .andExpect(jsonPath("$[*].id", containsInAnyOrder(faculty1.id().intValue(), faculty2.id().intValue())))
+                .andExpect(jsonPath("$[*].name", containsInAnyOrder(faculty1.name(), faculty2.name())))
+                .andExpect(jsonPath("$[*].color", containsInAnyOrder(faculty1.color(), faculty2.color())));
+    }
+
+    @Test
+    void getFacultiesPage() throws Exception {
+        FacultyView faculty = new FacultyView(42L, "faculty_name_test", "faculty_test_color");
+
+        when(facultyService.getFacultiesPage(null, 1)).thenReturn(new KeysetPage<>(Collections.singletonList(faculty), null));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/faculty")
+                        .param("limit", "1")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(KeysetPage.NEXT_CURSOR_HEADER))
+                .andExpect(jsonPath("$[0].id").value(42L))
+                .andExpect(jsonPath("$[0].name").value("faculty_name_test"));
     }
 
     @Test
@@ -153,18 +180,11 @@ class FacultyControllerTest {
         String nameRequest = "name1";
         String colorRequest = "color2";
 
-        Faculty faculty1 = new Faculty();
-        faculty1.setId(42L);
-        faculty1.setName("name1");
-        faculty1.setColor("red");
-
-        Faculty faculty2 = new Faculty();
-        faculty2.setId(43L);
-        faculty2.setName("name2");
-        faculty2.setColor("blue");
+        FacultyView faculty1 = new FacultyView(42L, "name1", "red");
+        FacultyView faculty2 = new FacultyView(43L, "name2", "blue");
 
-        Collection<Faculty> facultiesByName = Collections.singletonList(faculty1);
-        Collection<Faculty> facultiesByColor = Collections.singletonList(faculty2);
+        Collection<FacultyView> facultiesByName = Collections.singletonList(faculty1);
+        Collection<FacultyView> facultiesByColor = Collections.singletonList(faculty2);
 
         when(facultyService.findByNameOrColor(nameRequest)).thenReturn(facultiesByName);
         when(facultyService.findByNameOrColor(colorRequest)).thenReturn(facultiesByColor);
@@ -188,21 +208,35 @@ class FacultyControllerTest {
                 .andExpect(jsonPath("$[0].color").value("blue"));
     }
 
+    @Test
+    void getFacultyRoster() throws Exception {
+        Student student = new Student();
+        student.setId(42L);
+        student.setName("student_name_test");
+        student.setAge(22);
+
+        FacultyRoster roster = new FacultyRoster(1L, "faculty_name_test", "red", Collections.singletonList(student));
+
+        when(facultyService.getFacultyRoster(1L)).thenReturn(roster);
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/faculty/{id}/roster", 1L)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(1L))
+                .andExpect(jsonPath("$.name").value("faculty_name_test"))
+                .andExpect(jsonPath("$.students[0].id").value(42L))
+                .andExpect(jsonPath("$.students[0].name").value("student_name_test"));
+    }
+
     @Test
     void getStudentsByFacultyId() throws Exception {
         long facultyId = 1L;
 
-        Student student1 = new Student();
-        student1.setId(1L);
-        student1.setName("Student1");
-        student1.setAge(20);
-
-        Student student2 = new Student();
-        student2.setId(2L);
-        student2.setName("Student2");
-        student2.setAge(21);
+        StudentView student1 = new StudentView(1L, "Student1", 20, null, null);
+        StudentView student2 = new StudentView(2L, "Student2", 21, null, null);
 
-        Collection<Student> students = Arrays.asList(student1, student2);
+        Collection<StudentView> students = Arrays.asList(student1, student2);
 
         when(facultyService.getStudentsByFacultyId(facultyId)).thenReturn(students);
 
@@ -0,0 +1,46 @@
+package ru.hogwarts.school.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import ru.hogwarts.school.model.SearchHit;
+import ru.hogwarts.school.service.SearchService;
+
+import java.util.Arrays;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(SearchController.class)
+class SearchControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private SearchService searchService;
+
+    @Test
+    void search() throws Exception {
+        SearchHit studentHit = new SearchHit(SearchHit.Kind.STUDENT_NAME, 42L, "Hermione", 0.6);
+        SearchHit facultyHit = new SearchHit(SearchHit.Kind.FACULTY_NAME, 1L, "Hufflepuff", 0.2);
+
+        when(searchService.search("hermoine", 10)).thenReturn(Arrays.asList(studentHit, facultyHit));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/search")
+                        .param("q", "hermoine")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].kind").value("STUDENT_NAME"))
+                .andExpect(jsonPath("$[0].id").value(42L))
+                .andExpect(jsonPath("$[0].text").value("Hermione"))
+                .andExpect(jsonPath("$[1].kind").value("FACULTY_NAME"))
+                .andExpect(jsonPath("$[1].id").value(1L));
+    }
+}
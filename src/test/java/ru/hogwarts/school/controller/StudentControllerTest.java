@@ -1,27 +1,47 @@
 package ru.hogwarts.school.controller;
 
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.web.server.ResponseStatusException;
 import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.KeysetPage;
 import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.model.StudentBatch;
+import ru.hogwarts.school.model.StudentAggregates;
+import ru.hogwarts.school.model.StudentReport;
+import ru.hogwarts.school.model.StudentView;
 import ru.hogwarts.school.service.FacultyService;
 import ru.hogwarts.school.service.StudentService;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(StudentController.class)
@@ -61,12 +81,56 @@ class StudentControllerTest {
                 .andExpect(jsonPath("$.age").value(age));
     }
 
+    @Test
+    void createStudents() throws Exception {
+        JSONArray studentsArray = new JSONArray();
+        studentsArray.put(new JSONObject().put("name", "student_name_test").put("age", 22));
+        studentsArray.put(new JSONObject().put("name", "student_name_test2").put("age", 23));
+
+        Student student1 = new Student(42L, "student_name_test", 22);
+        Student student2 = new Student(43L, "student_name_test2", 23);
+
+        when(studentService.createStudents(anyList())).thenReturn(Arrays.asList(student1, student2));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .post("/student/batch")
+                        .content(studentsArray.toString())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(42L))
+                .andExpect(jsonPath("$[0].name").value("student_name_test"))
+                .andExpect(jsonPath("$[1].id").value(43L))
+                .andExpect(jsonPath("$[1].age").value(23));
+    }
+
+    @Test
+    void editStudents() throws Exception {
+        JSONArray studentsArray = new JSONArray();
+        studentsArray.put(new JSONObject().put("id", 42L).put("name", "updated_student_name_test").put("age", 24));
+
+        Student updatedStudent = new Student(42L, "updated_student_name_test", 24);
+
+        when(studentService.editStudents(anyList())).thenReturn(Collections.singletonList(updatedStudent));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .put("/student/batch")
+                        .content(studentsArray.toString())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(42L))
+                .andExpect(jsonPath("$[0].name").value("updated_student_name_test"))
+                .andExpect(jsonPath("$[0].age").value(24));
+    }
+
     @Test
     void getStudentInfo() throws Exception {
         Student student = new Student();
         student.setId(42L);
         student.setName("student_name_test");
         student.setAge(22);
+        student.setVersion(3L);
 
         when(studentService.findStudent(anyLong())).thenReturn(student);
 
@@ -74,9 +138,25 @@ class StudentControllerTest {
                         .get("/student/{id}", student.getId())
                         .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"3\""))
                 .andExpect(jsonPath("$.id").value(student.getId()))
                 .andExpect(jsonPath("$.name").value(student.getName()))
-                .andExpect(jsonPath("$.age").value(student.getAge()));
+                .andExpect(jsonPath("$.age").value(student.getAge()))
+                .andExpect(jsonPath("$.version").doesNotExist());
+    }
+
+    @Test
+    void getStudentInfoNotModified() throws Exception {
+        when(studentService.findStudentVersion(42L)).thenReturn(3L);
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/student/{id}", 42L)
+                        .header("If-None-Match", "\"3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"3\""))
+                .andExpect(content().string(""));
+
+        verify(studentService, never()).findStudent(anyLong());
     }
 
     @Test
@@ -94,7 +174,7 @@ class StudentControllerTest {
         studentObject.put("name", updatedName);
         studentObject.put("age", updatedAge);
 
-        when(studentService.editStudent(any(Student.class))).thenReturn(updatedStudent);
+        when(studentService.editStudent(any(Student.class), isNull())).thenReturn(updatedStudent);
 
         mockMvc.perform(MockMvcRequestBuilders
                         .put("/student/{id}", id)
@@ -107,6 +187,23 @@ class StudentControllerTest {
                 .andExpect(jsonPath("$.age").value(updatedAge));
     }
 
+    @Test
+    void editStudentInfoVersionMismatch() throws Exception {
+        JSONObject studentObject = new JSONObject();
+        studentObject.put("name", "stale_student_name");
+        studentObject.put("age", 22);
+
+        when(studentService.editStudent(any(Student.class), eq(2L)))
+                .thenThrow(new ResponseStatusException(HttpStatus.PRECONDITION_FAILED));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .put("/student/{id}", 43L)
+                        .header("If-Match", "\"2\"")
+                        .content(studentObject.toString())
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isPreconditionFailed());
+    }
+
     @Test
     void deleteStudent() throws Exception {
         Student student = new Student();
@@ -125,17 +222,10 @@ class StudentControllerTest {
 
     @Test
     void getAllStudent() throws Exception {
-        Student student1 = new Student();
-        student1.setId(42L);
-        student1.setName("student_name_test");
-        student1.setAge(22);
+        StudentView student1 = new StudentView(42L, "student_name_test", 22, null, null);
+        StudentView student2 = new StudentView(43L, "student_name_test2", 23, null, null);
 
-        Student student2 = new Student();
-        student2.setId(43L);
-        student2.setName("student_name_test2");
-        student2.setAge(23);
-
-        Collection<Student> students = Arrays.asList(student1, student2);
+        Collection<StudentView> students = Arrays.asList(student1, student2);
 
         when(studentService.getAllStudents()).thenReturn(students);
 
@@ -143,21 +233,77 @@ class StudentControllerTest {
                         .get("/student")
                         .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$[*].id", containsInAnyOrder(student1.getId().intValue(), student2.getId().intValue())))
-                .andExpect(jsonPath("$[*].name", containsInAnyOrder(student1.getName(), student2.getName())))
-                .andExpect(jsonPath("$[*].age", containsInAnyOrder(student1.getAge(), student2.getAge())));
+                .andExpect(jsonPath("$[*].id", containsInAnyOrder(student1.id().intValue(), student2.id().intValue())))
+                .andExpect(jsonPath("$[*].name", containsInAnyOrder(student1.name(), student2.name())))
+                .andExpect(jsonPath("$[*].age", containsInAnyOrder(student1.age(), student2.age())));
+    }
+
+    @Test
+    void getAllStudentAsCbor() throws Exception {
+        StudentView student = new StudentView(42L, "student_name_test", 22, 1L, "faculty_name_test");
+
+        when(studentService.getAllStudents()).thenReturn(List.of(student));
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders
+                        .get("/student")
+                        .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn();
+
+        StudentView[] students = new CBORMapper().readValue(result.getResponse().getContentAsByteArray(), StudentView[].class);
+        assertArrayEquals(new StudentView[]{student}, students);
+    }
+
+    @Test
+    void getStudentsPage() throws Exception {
+        StudentView student1 = new StudentView(42L, "student_name_test", 22, null, null);
+        StudentView student2 = new StudentView(43L, "student_name_test2", 23, null, null);
+
+        String cursor = KeysetPage.encodeCursor(41L);
+        String nextCursor = KeysetPage.encodeCursor(43L);
+
+        when(studentService.getStudentsPage(cursor, 2)).thenReturn(new KeysetPage<>(Arrays.asList(student1, student2), nextCursor));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/student")
+                        .param("limit", "2")
+                        .param("next", cursor)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(KeysetPage.NEXT_CURSOR_HEADER, nextCursor))
+                .andExpect(jsonPath("$[0].id").value(42L))
+                .andExpect(jsonPath("$[1].id").value(43L));
+    }
+
+    @Test
+    void exportStudents() throws Exception {
+        String rows = "{\"id\":42,\"name\":\"student_name_test\",\"age\":22}\n";
+
+        doAnswer(invocation -> {
+            OutputStream outputStream = invocation.getArgument(0);
+            outputStream.write(rows.getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(studentService).exportStudents(any(OutputStream.class));
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders
+                        .get("/student/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(rows));
     }
 
     @Test
     void findByAge() throws Exception {
         int ageRequest = 22;
 
-        Student student = new Student();
-        student.setId(42L);
-        student.setName("student_name_test");
-        student.setAge(22);
+        StudentView student = new StudentView(42L, "student_name_test", 22, null, null);
 
-        Collection<Student> studentsByAge = Collections.singletonList(student);
+        Collection<StudentView> studentsByAge = Collections.singletonList(student);
 
         when(studentService.findByAge(ageRequest)).thenReturn(studentsByAge);
 
@@ -175,12 +321,9 @@ class StudentControllerTest {
         int minAgeRequest = 20;
         int maxAgeRequest = 23;
 
-        Student student = new Student();
-        student.setId(42L);
-        student.setName("student_name_test");
-        student.setAge(22);
+        StudentView student = new StudentView(42L, "student_name_test", 22, null, null);
 
-        Collection<Student> studentsByAge = Collections.singletonList(student);
+        Collection<StudentView> studentsByAge = Collections.singletonList(student);
 
         when(studentService.findByAgeBetween(minAgeRequest, maxAgeRequest)).thenReturn(studentsByAge);
 
@@ -195,6 +338,121 @@ class StudentControllerTest {
                 .andExpect(jsonPath("$[0].age").value(22));
     }
 
+    @Test
+    void findByAgeBetweenPage() throws Exception {
+        StudentView student = new StudentView(42L, "student_name_test", 22, null, null);
+
+        String nextCursor = KeysetPage.encodeCursor("22:42");
+
+        when(studentService.findByAgeBetweenPage(20, 23, null, 1)).thenReturn(new KeysetPage<>(List.of(student), nextCursor));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/student/find/age_between")
+                        .param("ageMin", "20")
+                        .param("ageMax", "23")
+                        .param("limit", "1")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(KeysetPage.NEXT_CURSOR_HEADER, nextCursor))
+                .andExpect(jsonPath("$[0].id").value(42L))
+                .andExpect(jsonPath("$[0].age").value(22));
+    }
+
+    @Test
+    void countByAgeBetween() throws Exception {
+        when(studentService.countByAgeBetween(20, 23)).thenReturn(3L);
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/student/find/age_between/count")
+                        .param("ageMin", "20")
+                        .param("ageMax", "23"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("3"));
+    }
+
+    @Test
+    void findStudents() throws Exception {
+        StudentBatch batch = new StudentBatch(List.of(new StudentView(2L, "Bob", 21, null, null),
+                new StudentView(1L, "Alice", 20, null, null)), List.of(9L));
+
+        when(studentService.findStudents(List.of(2L, 9L, 1L))).thenReturn(batch);
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/student/batch")
+                        .param("ids", "2,9,1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.students[0].id").value(2))
+                .andExpect(jsonPath("$.students[1].id").value(1))
+                .andExpect(jsonPath("$.missing[0]").value(9));
+    }
+
+    @Test
+    void findStudentsByIds() throws Exception {
+        when(studentService.findStudents(List.of(5L, 6L))).thenReturn(new StudentBatch(List.of(), List.of(5L, 6L)));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .post("/student/batch/lookup")
+                        .content("[5, 6]")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.students").isEmpty())
+                .andExpect(jsonPath("$.missing.length()").value(2));
+    }
+
+    @Test
+    void getStudentAggregates() throws Exception {
+        StudentAggregates aggregates = new StudentAggregates(3, 20.0, 18, 22, Map.of(1L, 2L), 1);
+
+        when(studentService.getStudentAggregates()).thenReturn(aggregates);
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/student/statistics")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count").value(3))
+                .andExpect(jsonPath("$.averageAge").value(20.0))
+                .andExpect(jsonPath("$.minAge").value(18))
+                .andExpect(jsonPath("$.maxAge").value(22))
+                .andExpect(jsonPath("$.countByFaculty.1").value(2))
+                .andExpect(jsonPath("$.countWithoutFaculty").value(1));
+    }
+
+    @Test
+    void buildReport() throws Exception {
+        StudentReport report = new StudentReport("age-histogram", 4, 3, 12, Map.of(20, 2L, 22, 1L));
+
+        when(studentService.buildReport("age-histogram", 4)).thenReturn(report);
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/student/report/{type}", "age-histogram")
+                        .param("parallelism", "4")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.type").value("age-histogram"))
+                .andExpect(jsonPath("$.parallelism").value(4))
+                .andExpect(jsonPath("$.rows").value(3))
+                .andExpect(jsonPath("$.result.20").value(2));
+    }
+
+    @Test
+    void searchByNamePrefix() throws Exception {
+        StudentView student = new StudentView(42L, "student_name_test", 22, 1L, "faculty_name_test");
+        String nextCursor = KeysetPage.encodeCursor(42L);
+
+        when(studentService.searchByNamePrefix("stud", null, 1)).thenReturn(new KeysetPage<>(Collections.singletonList(student), nextCursor));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/student/search")
+                        .param("prefix", "stud")
+                        .param("limit", "1")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(KeysetPage.NEXT_CURSOR_HEADER, nextCursor))
+                .andExpect(jsonPath("$[0].id").value(42L))
+                .andExpect(jsonPath("$[0].name").value("student_name_test"))
+                .andExpect(jsonPath("$[0].facultyName").value("faculty_name_test"));
+    }
+
     @Test
     void getFacultyByStudentId() throws Exception {
         long studentId = 1L;
@@ -0,0 +1,103 @@
+package ru.hogwarts.school.repository;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.FacultyRoster;
+import ru.hogwarts.school.model.FacultyView;
+import ru.hogwarts.school.model.Student;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+        "spring.liquibase.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"})
+class FacultyRepositoryTest {
+
+    @Autowired
+    private FacultyRepository facultyRepository;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Faculty faculty;
+    private Student student;
+
+    @BeforeEach
+    void setUp() {
+        faculty = entityManager.persist(new Faculty(null, "Gryffindor", "red"));
+        for (String name : new String[]{"Harry", "Ron", "Hermione"}) {
+            Student s = new Student(null, name, 17);
+            s.setFaculty(faculty);
+            student = entityManager.persist(s);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void findWithStudentsByIdUsesSingleStatement() {
+        FacultyRoster roster = facultyRepository.findWithStudentsById(faculty.getId())
+                .map(FacultyRoster::of)
+                .orElseThrow();
+
+        assertThat(roster.name()).isEqualTo("Gryffindor");
+        assertThat(roster.students()).extracting(Student::getName).containsExactlyInAnyOrder("Harry", "Ron", "Hermione");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void findWithFacultyByIdUsesSingleStatement() {
+        Faculty found = studentRepository.findWithFacultyById(student.getId())
+                .map(Student::getFaculty)
+                .orElseThrow();
+
+        assertThat(found.getColor()).isEqualTo("red");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void nameMatchHidesColorMatches() {
+        entityManager.persist(new Faculty(null, "Red", "gold")); // название совпадает с цветом Гриффиндора
+        entityManager.persist(new Faculty(null, "Hufflepuff", "RED"));
+        entityManager.flush();
+        statistics.clear();
+
+        List<FacultyView> found = facultyRepository.findViewsByNameOrColorIgnoreCase("red");
+
+        assertThat(found).extracting(FacultyView::name).containsExactly("Red");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void fallsBackToColorWhenNoNameMatches() {
+        entityManager.persist(new Faculty(null, "Hufflepuff", "RED"));
+        entityManager.persist(new Faculty(null, "Slytherin", "green"));
+        entityManager.flush();
+
+        assertThat(facultyRepository.findViewsByNameOrColorIgnoreCase("Red")).extracting(FacultyView::name)
+                .containsExactlyInAnyOrder("Gryffindor", "Hufflepuff");
+        assertThat(facultyRepository.findViewsByNameOrColorIgnoreCase("GRYFFINDOR")).extracting(FacultyView::name)
+                .containsExactly("Gryffindor");
+        assertThat(facultyRepository.findViewsByNameOrColorIgnoreCase("blue")).isEmpty();
+    }
+}
@@ -0,0 +1,104 @@
+package ru.hogwarts.school.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.server.ResponseStatusException;
+import ru.hogwarts.school.model.AvatarStatus;
+import ru.hogwarts.school.repository.AvatarRepository;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class AvatarPreviewQueueTest {
+    private final AvatarPreviewGenerator previewGenerator = mock(AvatarPreviewGenerator.class);
+    private final AvatarRepository avatarRepository = mock(AvatarRepository.class);
+    private final AvatarPreviewQueue queue = new AvatarPreviewQueue(previewGenerator, avatarRepository,
+            new ConcurrentMapCacheManager(AvatarService.AVATAR_PREVIEW_CACHE), mock(PlatformTransactionManager.class),
+            new SimpleMeterRegistry(), 1, 1);
+
+    @AfterEach
+    void tearDown() {
+        queue.shutdown();
+    }
+
+    @Test
+    void rejectsUploadsWhenQueueIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(previewGenerator.generatePreview(any(), any())).thenAnswer(invocation -> {
+            release.await();
+            return new byte[]{1};
+        });
+
+        queue.submit(queue.reserve(10L), 1L, Path.of("10.png"), "png");
+        queue.submit(queue.reserve(20L), 2L, Path.of("20.png"), "png");
+
+        assertThatThrownBy(() -> queue.reserve(30L))
+                .isInstanceOfSatisfying(ResponseStatusException.class, e -> assertThat(e.getStatusCode().value()).isEqualTo(503));
+        release.countDown();
+
+        verify(avatarRepository, timeout(5000)).updatePreview(1L, new byte[]{1}, AvatarStatus.READY);
+        verify(avatarRepository, timeout(5000)).updatePreview(2L, new byte[]{1}, AvatarStatus.READY);
+        awaitAllSlotsFree();
+    }
+
+    @Test
+    void marksAvatarFailedWhenPreviewCannotBeGenerated() throws Exception {
+        when(previewGenerator.generatePreview(any(), any())).thenThrow(new IOException("not an image"));
+
+        queue.submit(queue.reserve(10L), 1L, Path.of("10.txt"), "txt");
+
+        verify(avatarRepository, timeout(5000)).updatePreview(1L, null, AvatarStatus.FAILED);
+    }
+
+    @Test
+    void dropsPreviewOfReplacedFile() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(previewGenerator.generatePreview(any(), any()))
+                .thenAnswer(invocation -> {
+                    started.countDown();
+                    release.await();
+                    return new byte[]{1};
+                })
+                .thenReturn(new byte[]{2});
+
+        queue.submit(queue.reserve(10L), 1L, Path.of("10.png"), "png");
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        // новый оригинал: место резервируется до перезаписи файла, старая задача устаревает
+        AvatarPreviewQueue.Slot replacement = queue.reserve(10L);
+        release.countDown();
+        queue.submit(replacement, 1L, Path.of("10.png"), "png");
+
+        verify(avatarRepository, timeout(5000)).updatePreview(1L, new byte[]{2}, AvatarStatus.READY);
+        verify(avatarRepository, never()).updatePreview(1L, new byte[]{1}, AvatarStatus.READY);
+        awaitAllSlotsFree();
+    }
+
+    @Test
+    void marksAvatarFailedWhenPreviewCannotBeSaved() throws Exception {
+        when(previewGenerator.generatePreview(any(), any())).thenReturn(new byte[]{1});
+        doThrow(new IllegalStateException("value too long")).when(avatarRepository).updatePreview(1L, new byte[]{1}, AvatarStatus.READY);
+
+        queue.submit(queue.reserve(10L), 1L, Path.of("10.png"), "png");
+
+        verify(avatarRepository, timeout(5000)).updatePreview(1L, null, AvatarStatus.FAILED);
+        awaitAllSlotsFree();
+    }
+
+    private void awaitAllSlotsFree() throws InterruptedException {
+        for (int i = 0; i < 50 && queue.availableSlots() < 2; i++) {
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+        assertThat(queue.availableSlots()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,115 @@
+package ru.hogwarts.school.service;
+
+import com.github.benmanes.caffeine.cache.Policy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+import ru.hogwarts.school.config.AvatarCacheConfiguration;
+import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.model.AvatarPreview;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.AvatarRepository;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class AvatarServiceTest {
+    private final StudentService studentService = mock(StudentService.class);
+    private final AvatarRepository avatarRepository = mock(AvatarRepository.class);
+    private final AvatarPreviewQueue previewQueue = mock(AvatarPreviewQueue.class);
+    private final CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+    private AvatarService avatarService;
+
+    @TempDir
+    Path avatarsDir;
+
+    @BeforeEach
+    void setUp() {
+        new AvatarCacheConfiguration().avatarPreviewCacheCustomizer(DataSize.ofMegabytes(1)).customize(cacheManager);
+        avatarService = new AvatarService(studentService, avatarRepository, previewQueue, cacheManager,
+                mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(avatarService, "avatarsDir", avatarsDir.toString());
+    }
+
+    @Test
+    void uploadEvictsCachedPreview() throws Exception {
+        Cache cache = cacheManager.getCache(AvatarService.AVATAR_PREVIEW_CACHE);
+        cache.put(1L, new AvatarPreview(new byte[]{1}, "image/png"));
+        cache.put(2L, new AvatarPreview(new byte[]{2}, "image/png"));
+        when(studentService.findStudent(1L)).thenReturn(new Student(1L, "Harry", 11));
+        when(previewQueue.reserve(1L)).thenReturn(mock(AvatarPreviewQueue.Slot.class));
+        when(avatarRepository.findByStudent_Id(1L)).thenReturn(Optional.empty());
+        when(avatarRepository.save(any())).thenAnswer(invocation -> {
+            Avatar avatar = invocation.getArgument(0);
+            avatar.setId(10L);
+            return avatar;
+        });
+
+        avatarService.uploadAvatar(1L, new MockMultipartFile("avatar", "1.png", "image/png", new byte[]{1, 2, 3}));
+
+        assertThat(cache.get(1L)).isNull();
+        assertThat(cache.get(2L)).isNotNull();
+        verify(previewQueue).submit(any(), eq(10L), eq(avatarsDir.resolve("1.png")), eq("png"));
+    }
+
+    @Test
+    void uploadReservesSlotBeforeWritingFile() throws Exception {
+        when(studentService.findStudent(1L)).thenReturn(new Student(1L, "Harry", 11));
+        when(previewQueue.reserve(1L)).thenAnswer(invocation -> {
+            assertThat(avatarsDir.resolve("1.png")).doesNotExist();
+            return mock(AvatarPreviewQueue.Slot.class);
+        });
+        when(avatarRepository.findByStudent_Id(1L)).thenReturn(Optional.empty());
+        when(avatarRepository.save(any())).thenAnswer(invocation -> {
+            Avatar avatar = invocation.getArgument(0);
+            avatar.setId(10L);
+            return avatar;
+        });
+
+        avatarService.uploadAvatar(1L, new MockMultipartFile("avatar", "1.png", "image/png", new byte[]{1, 2, 3}));
+
+        assertThat(avatarsDir.resolve("1.png")).hasBinaryContent(new byte[]{1, 2, 3});
+    }
+
+    @Test
+    void resumesPendingPreviewsWhileQueueHasRoom() {
+        when(avatarRepository.findPending()).thenReturn(List.of(
+                new Object[]{10L, 1L, "/avatars/1.png"},
+                new Object[]{20L, 2L, "/avatars/2.jpg"},
+                new Object[]{30L, 3L, "/avatars/3.gif"}));
+        AvatarPreviewQueue.Slot first = mock(AvatarPreviewQueue.Slot.class);
+        AvatarPreviewQueue.Slot second = mock(AvatarPreviewQueue.Slot.class);
+        when(previewQueue.tryReserve(1L)).thenReturn(first);
+        when(previewQueue.tryReserve(2L)).thenReturn(second);
+
+        avatarService.resumePendingPreviews();
+
+        verify(previewQueue).submit(first, 10L, Path.of("/avatars/1.png"), "png");
+        verify(previewQueue).submit(second, 20L, Path.of("/avatars/2.jpg"), "jpg");
+        verify(previewQueue).tryReserve(3L); // очередь заполнена: третий остается PENDING
+        verify(previewQueue, times(2)).submit(any(), anyLong(), any(), any());
+    }
+
+    @Test
+    void previewCacheExpiresWithClientMaxAge() {
+        com.github.benmanes.caffeine.cache.Cache<?, ?> cache = (com.github.benmanes.caffeine.cache.Cache<?, ?>)
+                cacheManager.getCache(AvatarService.AVATAR_PREVIEW_CACHE).getNativeCache();
+
+        assertThat(cache.policy().expireAfterWrite()).get()
+                .extracting(Policy.FixedExpiration::getExpiresAfter)
+                .isEqualTo(AvatarService.PREVIEW_MAX_AGE);
+    }
+}
@@ -0,0 +1,163 @@
+package ru.hogwarts.school.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.event.FacultySnapshot;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.FacultyView;
+import ru.hogwarts.school.repository.FacultyRepository;
+
+import java.util.Collection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(properties = {
+        "spring.liquibase.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"})
+@Import({FacultyService.class, FacultyServiceCacheTest.Config.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // кэши обновляются после коммита, поэтому каждый вызов коммитится сам
+class FacultyServiceCacheTest {
+
+    @TestConfiguration
+    @EnableCaching
+    static class Config {
+        @Bean
+        CacheManager cacheManager() {
+            CaffeineCacheManager cacheManager = new CaffeineCacheManager(
+                    FacultyService.FACULTY_CACHE, FacultyService.ALL_FACULTIES_CACHE, FacultyService.FACULTY_SEARCH_CACHE);
+            cacheManager.setCacheSpecification("maximumSize=1000,expireAfterWrite=10m");
+            return cacheManager;
+        }
+    }
+
+    @Autowired
+    private FacultyService facultyService;
+
+    @Autowired
+    private FacultyRepository facultyRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private Faculty gryffindor;
+
+    @BeforeEach
+    void setUp() {
+        gryffindor = facultyService.createFaculty(new Faculty(null, "Gryffindor", "red"));
+        facultyService.createFaculty(new Faculty(null, "Slytherin", "green"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        facultyRepository.deleteAll();
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    @Test
+    void cachesSnapshotsAndHandsOutCopies() {
+        Faculty first = facultyService.findFaculty(gryffindor.getId());
+        first.setName("Hufflepuff");
+
+        Faculty second = facultyService.findFaculty(gryffindor.getId());
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getName()).isEqualTo("Gryffindor");
+        assertThat(facultyCache().get(gryffindor.getId()).get()).isInstanceOf(FacultySnapshot.class);
+        assertThat(facultyService.findFacultyVersion(gryffindor.getId())).isEqualTo(second.getVersion());
+        Collection<FacultyView> all = facultyService.getAllFaculties();
+        assertThatThrownBy(all::clear).isInstanceOf(UnsupportedOperationException.class);
+        Collection<FacultyView> found = facultyService.findByNameOrColor("red");
+        assertThatThrownBy(found::clear).isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    void createEvictsListAndMatchingSearches() {
+        warmUp();
+
+        Faculty ravenclaw = facultyService.createFaculty(new Faculty(null, "Ravenclaw", "Green"));
+
+        assertThat(cache(FacultyService.ALL_FACULTIES_CACHE).get("all")).isNull();
+        assertThat(cache(FacultyService.FACULTY_SEARCH_CACHE).get("green")).isNull();
+        assertThat(cache(FacultyService.FACULTY_SEARCH_CACHE).get("red")).isNotNull();
+        assertThat(facultyCache().get(ravenclaw.getId(), FacultySnapshot.class))
+                .isEqualTo(new FacultySnapshot(ravenclaw.getId(), "Ravenclaw", "Green", ravenclaw.getVersion()));
+        assertThat(facultyService.getAllFaculties()).hasSize(3);
+        assertThat(facultyService.findByNameOrColor("green")).extracting(FacultyView::name)
+                .containsExactlyInAnyOrder("Slytherin", "Ravenclaw");
+    }
+
+    @Test
+    void editEvictsOldAndNewSearchKeysAndRefreshesFaculty() {
+        warmUp();
+        facultyService.findByNameOrColor("gryffindor");
+        long version = facultyService.findFaculty(gryffindor.getId()).getVersion();
+
+        facultyService.editFaculty(new Faculty(gryffindor.getId(), "Gryffindor", "green"));
+
+        assertThat(cache(FacultyService.ALL_FACULTIES_CACHE).get("all")).isNull();
+        assertThat(cache(FacultyService.FACULTY_SEARCH_CACHE).get("red")).isNull();
+        assertThat(cache(FacultyService.FACULTY_SEARCH_CACHE).get("green")).isNull();
+        assertThat(cache(FacultyService.FACULTY_SEARCH_CACHE).get("gryffindor")).isNull();
+        assertThat(cache(FacultyService.FACULTY_SEARCH_CACHE).get("slytherin")).isNotNull();
+        assertThat(facultyCache().get(gryffindor.getId(), FacultySnapshot.class))
+                .isEqualTo(new FacultySnapshot(gryffindor.getId(), "Gryffindor", "green", version + 1));
+        assertThat(facultyService.findFacultyVersion(gryffindor.getId())).isEqualTo(version + 1);
+        assertThat(facultyService.findByNameOrColor("red")).isNull();
+    }
+
+    @Test
+    void deleteEvictsFacultyListAndSearches() {
+        warmUp();
+        facultyService.findFaculty(gryffindor.getId());
+
+        facultyService.deleteFaculty(gryffindor.getId());
+
+        assertThat(facultyCache().get(gryffindor.getId())).isNull();
+        assertThat(cache(FacultyService.ALL_FACULTIES_CACHE).get("all")).isNull();
+        assertThat(cache(FacultyService.FACULTY_SEARCH_CACHE).get("red")).isNull();
+        assertThat(cache(FacultyService.FACULTY_SEARCH_CACHE).get("green")).isNotNull();
+        assertThat(facultyService.findFaculty(gryffindor.getId())).isNull();
+        assertThat(facultyService.getAllFaculties()).extracting(FacultyView::name).containsExactly("Slytherin");
+    }
+
+    @Test
+    void failedEditLeavesCachesUntouched() {
+        warmUp();
+        Faculty cached = facultyService.findFaculty(gryffindor.getId());
+
+        assertThatThrownBy(() -> facultyService.editFaculty(new Faculty(gryffindor.getId(), "Gryffindor", "gold"),
+                cached.getVersion() + 1));
+
+        assertThat(facultyCache().get(gryffindor.getId(), FacultySnapshot.class).version()).isEqualTo(cached.getVersion());
+        assertThat(cache(FacultyService.ALL_FACULTIES_CACHE).get("all")).isNotNull();
+        assertThat(cache(FacultyService.FACULTY_SEARCH_CACHE).get("red")).isNotNull();
+    }
+
+    private void warmUp() {
+        facultyService.getAllFaculties();
+        facultyService.findByNameOrColor("RED");
+        facultyService.findByNameOrColor("green");
+        facultyService.findByNameOrColor("slytherin");
+    }
+
+    private Cache facultyCache() {
+        return cache(FacultyService.FACULTY_CACHE);
+    }
+
+    private Cache cache(String name) {
+        return cacheManager.getCache(name);
+    }
+}
@@ -0,0 +1,47 @@
+package ru.hogwarts.school.service;
+
+import org.junit.jupiter.api.Test;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.event.StudentSnapshot;
+import ru.hogwarts.school.model.SearchHit;
+import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SearchServiceTest {
+    private final StudentRepository studentRepository = mock(StudentRepository.class);
+    private final SearchService searchService = new SearchService(studentRepository, mock(FacultyRepository.class));
+
+    @Test
+    void changesDuringLoadAreNotOverwrittenByStreamedRows() {
+        StudentSnapshot harry = new StudentSnapshot(1L, "Harry Potter", 11, null);
+        StudentSnapshot ron = new StudentSnapshot(2L, "Ron Weasley", 11, null);
+        // строки прочитаны до того, как удаление и переименование закоммичены, а события пришли раньше конца загрузки
+        when(studentRepository.streamIdAndName()).thenAnswer(invocation -> {
+            searchService.onStudentChanged(StudentChangedEvent.deleted(harry));
+            searchService.onStudentChanged(new StudentChangedEvent(ron, new StudentSnapshot(2L, "Ronald Weasley", 11, null)));
+            return Stream.<Object[]>of(new Object[]{1L, "Harry Potter"}, new Object[]{2L, "Ron Weasley"});
+        });
+
+        searchService.loadIndex();
+
+        assertThat(searchService.search("harry potter", 10)).isEmpty();
+        assertThat(searchService.search("weasley", 10)).extracting(SearchHit::text).containsExactly("Ronald Weasley");
+    }
+
+    @Test
+    void changesAfterLoadGoToTheLoadedIndex() {
+        when(studentRepository.streamIdAndName()).thenReturn(Stream.<Object[]>of(new Object[]{1L, "Harry Potter"}));
+        searchService.loadIndex();
+
+        searchService.onStudentChanged(StudentChangedEvent.created(new StudentSnapshot(2L, "Hermione Granger", 11, null)));
+
+        assertThat(searchService.search("granger", 10)).extracting(SearchHit::id).containsExactly(2L);
+        assertThat(searchService.search("potter", 10)).extracting(SearchHit::id).containsExactly(1L);
+    }
+}
@@ -0,0 +1,158 @@
+package ru.hogwarts.school.service;
+
+import org.junit.jupiter.api.Test;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.event.StudentSnapshot;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StudentAgeIndexTest {
+    private final StudentRepository studentRepository = mock(StudentRepository.class);
+    private final StudentAgeIndex index = new StudentAgeIndex(studentRepository);
+
+    @Test
+    void notReadyUntilLoaded() {
+        assertThat(index.isReady()).isFalse();
+
+        load(new Object[]{1L, 11});
+
+        assertThat(index.isReady()).isTrue();
+    }
+
+    @Test
+    void loadsBucketsSortedById() {
+        load(new Object[]{5L, 12}, new Object[]{3L, 11}, new Object[]{1L, 12}, new Object[]{4L, 11}, new Object[]{2L, 14});
+
+        assertThat(index.ids(11, 14, 11, Long.MIN_VALUE, 10)).containsExactly(3L, 4L, 1L, 5L, 2L);
+        assertThat(index.ids(12, 12, 12, Long.MIN_VALUE, 10)).containsExactly(1L, 5L);
+    }
+
+    @Test
+    void addsRemovesAndMovesStudentsBetweenAges() {
+        load();
+
+        created(1, 11);
+        created(2, 11);
+        created(3, 12);
+        created(2, 11); // повтор события не дублирует id
+        assertThat(index.ids(11, 11, 11, Long.MIN_VALUE, 10)).containsExactly(1L, 2L);
+
+        moved(1, 11, 13);
+        deleted(3, 12);
+        deleted(7, 12); // неизвестный студент
+
+        assertThat(index.ids(0, StudentAgeIndex.MAX_AGE, 0, Long.MIN_VALUE, 10)).containsExactly(2L, 1L);
+        assertThat(index.count(11, 11)).isEqualTo(1);
+        assertThat(index.count(12, 12)).isZero();
+        assertThat(index.count(13, 13)).isEqualTo(1);
+    }
+
+    @Test
+    void keepsAgesFromZeroToMaxAge() {
+        load();
+
+        created(1, 0);
+        created(2, StudentAgeIndex.MAX_AGE);
+
+        assertThat(index.isReady()).isTrue();
+        assertThat(index.ids(0, 0, 0, Long.MIN_VALUE, 10)).containsExactly(1L);
+        assertThat(index.ids(StudentAgeIndex.MAX_AGE, StudentAgeIndex.MAX_AGE, StudentAgeIndex.MAX_AGE, Long.MIN_VALUE, 10))
+                .containsExactly(2L);
+        // границы запроса за пределами домена обрезаются
+        assertThat(index.count(-10, 1000)).isEqualTo(2);
+        assertThat(index.ids(-10, 1000, -10, Long.MIN_VALUE, 10)).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void outOfRangeAgesSendQueriesToDatabase() {
+        load(new Object[]{1L, 11}, new Object[]{2L, -1});
+        assertThat(index.isReady()).isFalse();
+
+        load(new Object[]{1L, 11});
+        created(2, StudentAgeIndex.MAX_AGE + 1);
+        assertThat(index.isReady()).isFalse();
+
+        moved(2, StudentAgeIndex.MAX_AGE + 1, 20);
+        assertThat(index.isReady()).isTrue();
+        assertThat(index.ids(0, StudentAgeIndex.MAX_AGE, 0, Long.MIN_VALUE, 10)).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void countsAndPagesRanges() {
+        load(new Object[]{1L, 11}, new Object[]{2L, 11}, new Object[]{3L, 12}, new Object[]{4L, 13}, new Object[]{5L, 13});
+
+        assertThat(index.count(11, 12)).isEqualTo(3);
+        assertThat(index.count(12, 13)).isEqualTo(3);
+        assertThat(index.ids(11, 13, 11, Long.MIN_VALUE, 2)).containsExactly(1L, 2L);
+        // следующая страница начинается строго после курсора (11, 2)
+        assertThat(index.ids(11, 13, 11, 2L, 2)).containsExactly(3L, 4L);
+        assertThat(index.ids(11, 13, 13, 4L, 2)).containsExactly(5L);
+        assertThat(index.ids(11, 13, 13, 5L, 2)).isEmpty();
+    }
+
+    @Test
+    void reversedBoundsMatchNothing() {
+        load(new Object[]{1L, 11}, new Object[]{2L, 13});
+
+        // как between в SQL: min > max - пустой диапазон, а не перестановка границ
+        assertThat(index.count(13, 11)).isZero();
+        assertThat(index.ids(13, 11, 13, Long.MIN_VALUE, 10)).isEmpty();
+        assertThat(index.ids(11, 13, 11, Long.MIN_VALUE, 10)).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void reloadsWhenStudentChangesBetweenStreamAndSwap() {
+        when(studentRepository.streamIdAndAge())
+                .thenAnswer(invocation -> {
+                    // строки прочитаны до коммита, а событие применено к индексу раньше, чем загрузка его подменит
+                    created(3, 12);
+                    deleted(1, 11);
+                    return Stream.<Object[]>of(new Object[]{1L, 11}, new Object[]{2L, 11});
+                })
+                .thenReturn(Stream.<Object[]>of(new Object[]{2L, 11}, new Object[]{3L, 12}));
+
+        index.load();
+
+        verify(studentRepository, times(2)).streamIdAndAge();
+        assertThat(index.isReady()).isTrue();
+        assertThat(index.ids(0, StudentAgeIndex.MAX_AGE, 0, Long.MIN_VALUE, 10)).containsExactly(2L, 3L);
+    }
+
+    @Test
+    void staysNotReadyWhenStudentsKeepChangingDuringLoad() {
+        when(studentRepository.streamIdAndAge()).thenAnswer(invocation -> {
+            created(1, 11);
+            return Stream.<Object[]>of(new Object[]{1L, 11});
+        });
+
+        index.load();
+
+        verify(studentRepository, times(3)).streamIdAndAge();
+        assertThat(index.isReady()).isFalse();
+    }
+
+    private void load(Object[]... rows) {
+        when(studentRepository.streamIdAndAge()).thenReturn(Stream.of(rows));
+        index.load();
+    }
+
+    private void created(long id, int age) {
+        index.onStudentChanged(StudentChangedEvent.created(new StudentSnapshot(id, "Student " + id, age, null)));
+    }
+
+    private void moved(long id, int fromAge, int toAge) {
+        index.onStudentChanged(new StudentChangedEvent(new StudentSnapshot(id, "Student " + id, fromAge, null),
+                new StudentSnapshot(id, "Student " + id, toAge, null)));
+    }
+
+    private void deleted(long id, int age) {
+        index.onStudentChanged(StudentChangedEvent.deleted(new StudentSnapshot(id, "Student " + id, age, null)));
+    }
+}
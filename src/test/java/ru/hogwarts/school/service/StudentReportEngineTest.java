@@ -0,0 +1,119 @@
+package ru.hogwarts.school.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+import ru.hogwarts.school.config.DatabaseTaskExecutor;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.model.StudentReport;
+import ru.hogwarts.school.model.StudentView;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collector;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(properties = {
+        "spring.liquibase.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "school.executor.database-permits=2",
+        "students.report.chunk-size=3"})
+@Import({StudentReportEngine.class, StudentReportEngineTest.Config.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // потоки отчета читают своими соединениями, данные должны быть закоммичены
+class StudentReportEngineTest {
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        DatabaseTaskExecutor databaseTaskExecutor() {
+            return new DatabaseTaskExecutor(new SyncTaskExecutor(), 2);
+        }
+    }
+
+    @Autowired
+    private StudentReportEngine engine;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private DatabaseTaskExecutor databaseTaskExecutor;
+
+    private List<Long> ids;
+
+    @BeforeEach
+    void setUp() {
+        List<Student> students = IntStream.range(0, 20)
+                .mapToObj(i -> new Student(null, "Student " + i, 11 + i % 3))
+                .toList();
+        List<Long> saved = studentRepository.saveAll(students).stream().map(Student::getId).sorted().toList();
+        // дыры в диапазоне id: часть кусков окажется пустой
+        List<Long> deleted = List.of(saved.get(3), saved.get(4), saved.get(5), saved.get(11));
+        studentRepository.deleteAllById(deleted);
+        ids = saved.stream().filter(id -> !deleted.contains(id)).toList();
+    }
+
+    @AfterEach
+    void tearDown() {
+        studentRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void splitsIdRangeIntoChunksAndCombinesThemInIdOrder() {
+        engine.register("chunks", chunksOfIds());
+
+        for (int parallelism = 1; parallelism <= 2; parallelism++) {
+            StudentReport report = engine.run("chunks", parallelism);
+
+            @SuppressWarnings("unchecked")
+            List<List<Long>> chunks = (List<List<Long>>) report.result();
+            assertThat(chunks).hasSizeGreaterThan(1).allSatisfy(chunk -> assertThat(chunk).hasSizeLessThanOrEqualTo(3));
+            assertThat(chunks.stream().flatMap(List::stream).toList()).isEqualTo(ids);
+            assertThat(report.rows()).isEqualTo(ids.size());
+            assertThat(report.parallelism()).isEqualTo(parallelism);
+        }
+        assertThat(databaseTaskExecutor.availablePermits()).isEqualTo(2);
+    }
+
+    @Test
+    void buildsBuiltInReports() {
+        assertThat(engine.run("count", null).result()).isEqualTo((long) ids.size());
+        assertThat(engine.run("age-histogram", 5).result()).isEqualTo(Map.of(11, 6L, 12, 6L, 13, 4L));
+        assertThat(engine.run("age-histogram", 5).parallelism()).isEqualTo(2); // не больше разрешений к базе
+    }
+
+    @Test
+    void rejectsUnknownReports() {
+        assertThatThrownBy(() -> engine.run("export", null))
+                .isInstanceOfSatisfying(ResponseStatusException.class, e -> assertThat(e.getStatusCode().value()).isEqualTo(404));
+        assertThatThrownBy(() -> engine.run("count", 0))
+                .isInstanceOfSatisfying(ResponseStatusException.class, e -> assertThat(e.getStatusCode().value()).isEqualTo(400));
+    }
+
+    /**
+     * Каждый кусок дает отдельный список id; combiner склеивает списки, так что видно и деление, и порядок слияния.
+     */
+    private static Collector<StudentView, List<List<Long>>, List<List<Long>>> chunksOfIds() {
+        return Collector.of(
+                () -> new ArrayList<>(List.of(new ArrayList<>())),
+                (chunks, student) -> chunks.get(0).add(student.id()),
+                (left, right) -> {
+                    left.addAll(right);
+                    return left;
+                });
+    }
+}
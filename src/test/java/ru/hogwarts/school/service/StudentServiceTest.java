@@ -0,0 +1,156 @@
+package ru.hogwarts.school.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.assertj.core.groups.Tuple;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.web.server.ResponseStatusException;
+import ru.hogwarts.school.config.DatabaseTaskExecutor;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.model.StudentView;
+import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+@DataJpaTest(properties = {
+        "spring.liquibase.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.jdbc.batch_size=2"})
+@Import(StudentService.class)
+class StudentServiceTest {
+
+    @Autowired
+    private StudentService studentService;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private FacultyRepository facultyRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @MockitoBean
+    private StudentStatistics studentStatistics;
+
+    @MockitoBean
+    private StudentAgeIndex studentAgeIndex;
+
+    @MockitoBean
+    private DatabaseTaskExecutor databaseTaskExecutor;
+
+    @MockitoBean
+    private StudentReportEngine studentReportEngine;
+
+    @MockitoBean
+    private ObjectMapper objectMapper;
+
+    private Faculty faculty;
+
+    @BeforeEach
+    void setUp() {
+        faculty = entityManager.persistFlushFind(new Faculty(null, "Gryffindor", "red"));
+    }
+
+    @Test
+    void createStudentsInsertsRowsAndClearsContextEveryBatch() {
+        List<Student> students = newStudents(5);
+
+        List<Student> created = new ArrayList<>(studentService.createStudents(students));
+        entityManager.flush();
+
+        // batch_size=2: контекст очищен после 2-го и 4-го студента, под управлением остался только 5-й
+        assertThat(created).extracting(student -> entityManager.getEntityManager().contains(student))
+                .containsExactly(false, false, false, false, true);
+        entityManager.clear();
+        assertThat(studentRepository.findAll())
+                .extracting(Student::getName, student -> student.getFaculty().getId())
+                .containsExactlyInAnyOrder(students.stream()
+                        .map(student -> Tuple.tuple(student.getName(), faculty.getId()))
+                        .toArray(Tuple[]::new));
+    }
+
+    @Test
+    void createStudentsWithoutJdbcBatching() {
+        StudentService unbatched = new StudentService(studentRepository, facultyRepository, studentStatistics, studentAgeIndex,
+                databaseTaskExecutor, studentReportEngine, eventPublisher, entityManager.getEntityManager(), objectMapper, 0);
+
+        List<Student> created = new ArrayList<>(unbatched.createStudents(newStudents(3)));
+
+        assertThat(created).allMatch(student -> entityManager.getEntityManager().contains(student));
+        assertThat(studentRepository.count()).isEqualTo(3);
+    }
+
+    @Test
+    void editStudentsRejectsMissingIdBeforeQueryingFaculties() {
+        Faculty unknown = new Faculty(-1L, "Unknown", "none");
+        Student student = new Student(null, "Harry", 17);
+        student.setFaculty(unknown);
+
+        assertThatThrownBy(() -> studentService.editStudents(List.of(student)))
+                .isInstanceOfSatisfying(ResponseStatusException.class, e -> assertThat(e.getStatusCode().value()).isEqualTo(400));
+    }
+
+    @Test
+    void editStudentRejectsStaleVersion() {
+        Student student = persistStudent();
+
+        assertThatThrownBy(() -> studentService.editStudent(new Student(student.getId(), "Ron", 12), student.getVersion() + 1))
+                .isInstanceOfSatisfying(ResponseStatusException.class, e -> assertThat(e.getStatusCode().value()).isEqualTo(412));
+    }
+
+    @Test
+    void editStudentsReportsConcurrentUpdateAsConflict() {
+        Student student = persistStudent();
+        studentRepository.findById(student.getId()).orElseThrow();
+        // другая транзакция успела изменить строку после чтения
+        entityManager.getEntityManager().createNativeQuery("update student set version = version + 1 where id = :id")
+                .setParameter("id", student.getId())
+                .executeUpdate();
+
+        assertThatThrownBy(() -> studentService.editStudents(List.of(new Student(student.getId(), "Ron", 12))))
+                .isInstanceOfSatisfying(ResponseStatusException.class, e -> assertThat(e.getStatusCode().value()).isEqualTo(409));
+    }
+
+    @Test
+    void findByAgeBetweenTakesMinThenMax() {
+        studentService.createStudents(newStudents(5)); // возраст 11..15
+
+        // индекс не загружен (мок), запрос идет в базу
+        assertThat(studentService.findByAgeBetween(12, 13)).extracting(StudentView::age).containsExactlyInAnyOrder(12, 13);
+        assertThat(studentService.findByAgeBetween(13, 12)).isEmpty();
+    }
+
+    private Student persistStudent() {
+        Student student = entityManager.persistFlushFind(new Student(null, "Harry", 11));
+        entityManager.clear();
+        return student;
+    }
+
+    private List<Student> newStudents(int count) {
+        List<Student> students = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Student student = new Student(null, "Student " + i, 11 + i);
+            student.setFaculty(new Faculty(faculty.getId(), null, null));
+            students.add(student);
+        }
+        return students;
+    }
+}
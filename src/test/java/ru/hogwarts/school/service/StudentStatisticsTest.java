@@ -0,0 +1,97 @@
+package ru.hogwarts.school.service;
+
+import org.junit.jupiter.api.Test;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.event.StudentSnapshot;
+import ru.hogwarts.school.model.StudentAggregates;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class StudentStatisticsTest {
+    private final StudentRepository studentRepository = mock(StudentRepository.class);
+    private final StudentStatistics statistics = new StudentStatistics(studentRepository);
+
+    @Test
+    void appliesCreateEditAndDeleteDeltas() {
+        statistics.onStudentChanged(StudentChangedEvent.created(new StudentSnapshot(1, "Harry", 11, 1L)));
+        statistics.onStudentChanged(StudentChangedEvent.created(new StudentSnapshot(2, "Ron", 12, 1L)));
+        statistics.onStudentChanged(StudentChangedEvent.created(new StudentSnapshot(3, "Luna", 15, null)));
+
+        assertThat(statistics.aggregates()).isEqualTo(new StudentAggregates(3, 38 / 3.0, 11, 15, Map.of(1L, 2L), 1));
+
+        // Гарри повзрослел и перешел на другой факультет, Луна ушла
+        statistics.onStudentChanged(new StudentChangedEvent(new StudentSnapshot(1, "Harry", 11, 1L),
+                new StudentSnapshot(1, "Harry", 17, 2L)));
+        statistics.onStudentChanged(StudentChangedEvent.deleted(new StudentSnapshot(3, "Luna", 15, null)));
+
+        assertThat(statistics.aggregates()).isEqualTo(new StudentAggregates(2, 14.5, 12, 17, Map.of(1L, 1L, 2L, 1L), 0));
+    }
+
+    @Test
+    void emptyStatistics() {
+        assertThat(statistics.averageAge()).isNull();
+        assertThat(statistics.aggregates()).isEqualTo(new StudentAggregates(0, null, null, null, Map.of(), 0));
+    }
+
+    @Test
+    void reconcileBuildsAgeBucketsAndFacultyCountsFromOneSnapshot() {
+        when(studentRepository.countGroupedByAgeAndFaculty()).thenReturn(rows(
+                new Object[]{11, 1L, 2L},
+                new Object[]{11, null, 1L},
+                new Object[]{14, 2L, 3L},
+                new Object[]{17, 1L, 1L}));
+
+        statistics.reconcile();
+
+        assertThat(statistics.count()).isEqualTo(7);
+        assertThat(statistics.aggregates()).isEqualTo(new StudentAggregates(7, (11 * 3 + 14 * 3 + 17) / 7.0, 11, 17,
+                Map.of(1L, 3L, 2L, 3L), 1));
+
+        // после сверки события снова применяются к свежему снимку, пустые корзины возрастов удаляются
+        statistics.onStudentChanged(StudentChangedEvent.deleted(new StudentSnapshot(9, "Draco", 17, 1L)));
+        assertThat(statistics.aggregates().maxAge()).isEqualTo(14);
+    }
+
+    @Test
+    void reconcileDiscardsSnapshotWhenStudentsChangeDuringQuery() {
+        StudentSnapshot neville = new StudentSnapshot(5, "Neville", 12, 1L);
+        when(studentRepository.countGroupedByAgeAndFaculty())
+                .thenAnswer(invocation -> {
+                    // событие пришло, пока шел запрос: неизвестно, видит ли его снимок
+                    statistics.onStudentChanged(StudentChangedEvent.created(neville));
+                    return rows(new Object[]{11, 1L, 1L});
+                })
+                .thenReturn(rows(new Object[]{11, 1L, 1L}, new Object[]{12, 1L, 1L}));
+
+        statistics.reconcile();
+
+        verify(studentRepository, times(2)).countGroupedByAgeAndFaculty();
+        assertThat(statistics.aggregates()).isEqualTo(new StudentAggregates(2, 11.5, 11, 12, Map.of(1L, 2L), 0));
+    }
+
+    @Test
+    void reconcileGivesUpWhenStudentsKeepChanging() {
+        List<Long> ids = new ArrayList<>();
+        when(studentRepository.countGroupedByAgeAndFaculty()).thenAnswer(invocation -> {
+            long id = ids.size() + 1;
+            ids.add(id);
+            statistics.onStudentChanged(StudentChangedEvent.created(new StudentSnapshot(id, "Student " + id, 11, null)));
+            return rows();
+        });
+
+        statistics.reconcile();
+
+        // снимок ни разу не принят, события не потеряны
+        assertThat(statistics.count()).isEqualTo(ids.size());
+    }
+
+    private static List<Object[]> rows(Object[]... rows) {
+        return List.of(rows);
+    }
+}
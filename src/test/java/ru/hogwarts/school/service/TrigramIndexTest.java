@@ -0,0 +1,98 @@
+package ru.hogwarts.school.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrigramIndexTest {
+    private final TrigramIndex index = new TrigramIndex();
+
+    @Test
+    void extractsPaddedWordTrigrams() {
+        assertThat(TrigramIndex.trigrams("Cat")).containsExactlyInAnyOrder(gram("  c"), gram(" ca"), gram("cat"), gram("at "));
+        // регистр, ё и разделители не влияют, повторы схлопываются
+        assertThat(TrigramIndex.trigrams("cat, CAT!")).isEqualTo(TrigramIndex.trigrams("cat"));
+        assertThat(TrigramIndex.trigrams("Ёж")).isEqualTo(TrigramIndex.trigrams("еж"));
+        assertThat(TrigramIndex.trigrams("ab cd")).hasSize(6);
+        assertThat(TrigramIndex.trigrams(" ,. ")).isEmpty();
+        assertThat(TrigramIndex.trigrams(null)).isEmpty();
+    }
+
+    @Test
+    void ranksBySimilarity() {
+        index.put(1, "Harry Potter");
+        index.put(2, "Harry");
+        index.put(3, "Barry");
+        index.put(4, "Hermione");
+
+        List<TrigramIndex.Match> matches = index.search("harry", 10, 0.3);
+
+        assertThat(matches).extracting(TrigramIndex.Match::key).containsExactly(2L, 1L, 3L);
+        assertThat(matches.get(0).score()).isEqualTo(1.0);
+        assertThat(matches.get(0).text()).isEqualTo("Harry");
+        assertThat(index.search("harry", 1, 0.3)).extracting(TrigramIndex.Match::key).containsExactly(2L);
+        assertThat(index.search("harry", 10, 1.0)).extracting(TrigramIndex.Match::key).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(index.search("", 10, 0.3)).isEmpty();
+    }
+
+    @Test
+    void removesAndReplacesDocuments() {
+        index.put(1, "Harry");
+        index.put(2, "Ron");
+
+        index.put(1, "Hermione");
+        index.remove(2);
+        index.remove(3);
+
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.search("harry", 10, 0.3)).isEmpty();
+        assertThat(index.search("ron", 10, 0.3)).isEmpty();
+        assertThat(index.search("hermione", 10, 0.3)).extracting(TrigramIndex.Match::key).containsExactly(1L);
+    }
+
+    @Test
+    void compactsAfterMostDocumentsAreRemoved() {
+        int documents = 3000;
+        for (int i = 0; i < documents; i++) {
+            index.put(i, "student" + i);
+        }
+        for (int i = 0; i < documents; i++) {
+            if (i % 10 != 0) {
+                index.remove(i);
+            }
+        }
+
+        assertThat(index.size()).isEqualTo(documents / 10);
+        assertThat(index.search("student2990", 1, 0.5)).extracting(TrigramIndex.Match::key).containsExactly(2990L);
+        assertThat(index.search("student2991", 5, 1.0)).isEmpty();
+        index.put(5000, "student5000");
+        assertThat(index.search("student5000", 1, 1.0)).extracting(TrigramIndex.Match::text).containsExactly("student5000");
+    }
+
+    @Test
+    void mergeWithoutScratchBuffersFindsTheSameMatches() {
+        TrigramIndex merging = new TrigramIndex(0);
+        String[] names = {"Harry Potter", "Harriet", "Barry", "Larry Potts", "Hermione Granger", "Ron Weasley", "Harry"};
+        for (int i = 0; i < 500; i++) {
+            String name = names[i % names.length] + " " + i;
+            index.put(i, name);
+            merging.put(i, name);
+        }
+        for (int i = 0; i < 500; i += 3) {
+            index.remove(i);
+            merging.remove(i);
+        }
+
+        for (String query : new String[]{"harry", "potter 12", "granger", "arr", "weasley 499"}) {
+            assertThat(merging.search(query, 10, 0.3)).extracting(TrigramIndex.Match::key, TrigramIndex.Match::score)
+                    .isEqualTo(index.search(query, 10, 0.3).stream()
+                            .map(match -> org.assertj.core.groups.Tuple.tuple(match.key(), match.score())).toList());
+        }
+    }
+
+    private static long gram(String chars) {
+        return ((long) chars.charAt(0) << 32) | ((long) chars.charAt(1) << 16) | chars.charAt(2);
+    }
+}